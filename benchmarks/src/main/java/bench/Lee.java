@@ -0,0 +1,213 @@
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Calls into the solver, whose classes are in the default package.
+ * <p>
+ * JMH won't generate benchmarks for a class in the default package, and a class in a
+ * named package can't name one in the default package, so the methods that are
+ * benchmarked are looked up once by reflection and called through method handles.
+ * The handles are static final, so the JIT inlines through them and a call costs
+ * the same as a direct one.  Types the benchmarks can't name (BitGrid, Route, Node)
+ * are passed around as Object.
+ */
+final class Lee
+{
+    private static final MethodHandle EXAMPLE_FILE = find("Main", "exampleFile", String.class);
+    private static final MethodHandle READ_MAZE = find("Main", "readMaze", File.class);
+    private static final MethodHandle END_DIST = find("Main", "endDist",
+            int[][].class, int.class, int.class, int.class, int.class, int.class, int.class);
+    private static final MethodHandle BFS = find("Main", "BFS",
+            int[][].class, int.class, int.class, int.class, int.class, int.class, int.class);
+    private static final MethodHandle BFS_MAP = find("Main", "BFS",
+            int[][].class, int.class, int.class, int.class, int.class, int.class, int.class, int.class);
+    private static final MethodHandle BFS_PARENTS = find("Main", "BFSParents",
+            int[][].class, int.class, int.class, int.class, int.class, int.class, int.class);
+    private static final MethodHandle CONVERT_PATH_MAP = find("Main", "convertPath",
+            int.class, int.class, Map.class, int[][].class);
+    private static final MethodHandle CONVERT_PATH = find("Main", "convertPath",
+            int.class, int.class, int[].class, int[][].class);
+
+    private static final Class<?> EASY = type("EasyBufferedImage");
+    private static final MethodHandle CREATE_IMAGE = find("EasyBufferedImage", "createImage", File.class);
+    private static final MethodHandle CREATE_IMAGE_PIXELS = find("EasyBufferedImage", "createImage", int[][].class);
+    private static final MethodHandle GET_PIXELS_2D = find("EasyBufferedImage", "getPixels2D", int.class);
+    private static final MethodHandle SAVE = find("EasyBufferedImage", "save", String.class, int.class);
+
+    private static final MethodHandle READ_GRID = find("PngMazeReader", "read", File.class);
+    private static final MethodHandle SOLVE_GRID = find("GridSearch", "solve",
+            type("BitGrid"), int.class, int.class, int.class, int.class);
+    private static final MethodHandle RENDER = find("SolutionWriter", "render", type("BitGrid"), type("Route"));
+    private static final MethodHandle WRITE = find("SolutionWriter", "write", BufferedImage.class, File.class, int.class);
+
+    private Lee() {
+    }
+
+    static File exampleFile(String imageName) {
+        try {
+            return (File) EXAMPLE_FILE.invoke(imageName);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int[][] readMaze(File file) {
+        try {
+            return (int[][]) READ_MAZE.invoke(file);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int endDist(int[][] mat, int i, int j, int x, int y, int M, int N) {
+        try {
+            return (int) END_DIST.invoke(mat, i, j, x, y, M, N);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int[][] bfs(int[][] mat, int i, int j, int x, int y, int M, int N) {
+        try {
+            return (int[][]) BFS.invoke(mat, i, j, x, y, M, N);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static Map<?, ?> bfsMap(int[][] mat, int i, int j, int x, int y, int M, int N) {
+        try {
+            return (Map<?, ?>) BFS_MAP.invoke(mat, i, j, x, y, M, N, 0);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int[] bfsParents(int[][] mat, int i, int j, int x, int y, int M, int N) {
+        try {
+            return (int[]) BFS_PARENTS.invoke(mat, i, j, x, y, M, N);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int[][] convertPath(int M, int N, Map<?, ?> closed, int[][] mat) {
+        try {
+            return (int[][]) CONVERT_PATH_MAP.invoke(M, N, closed, mat);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int[][] convertPath(int M, int N, int[] parent, int[][] mat) {
+        try {
+            return (int[][]) CONVERT_PATH.invoke(M, N, parent, mat);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // EasyBufferedImage.createImage(File)
+    static BufferedImage createImage(File file) {
+        try {
+            return (BufferedImage) CREATE_IMAGE.invoke(file);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // EasyBufferedImage.createImage(int[][])
+    static BufferedImage createImage(int[][] pixels) {
+        try {
+            return (BufferedImage) CREATE_IMAGE_PIXELS.invoke(pixels);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // EasyBufferedImage.getPixels2D(band) of an image made by createImage
+    static int[][] getPixels2D(BufferedImage image, int band) {
+        try {
+            return (int[][]) GET_PIXELS_2D.invoke(EASY.cast(image), band);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // EasyBufferedImage.save(filename, PNG) of an image made by createImage
+    static void savePng(BufferedImage image, File file) {
+        try {
+            SAVE.invoke(EASY.cast(image), file.getPath(), 2);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // PngMazeReader.read, a BitGrid
+    static Object readGrid(File file) {
+        try {
+            return READ_GRID.invoke(file);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // GridSearch.solve on a BitGrid, a Route
+    static Object solve(Object grid, int sx, int sy, int tx, int ty) {
+        try {
+            return SOLVE_GRID.invoke(grid, sx, sy, tx, ty);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // SolutionWriter.render of a BitGrid and a Route
+    static BufferedImage render(Object grid, Object route) {
+        try {
+            return (BufferedImage) RENDER.invoke(grid, route);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // SolutionWriter.write(image, file, level)
+    static void write(BufferedImage image, File file, int level) {
+        try {
+            WRITE.invoke(image, file, level);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle find(String className, String name, Class<?>... parameters) {
+        try {
+            Method method = type(className).getDeclaredMethod(name, parameters);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException)
+            return (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+        return new RuntimeException(e);
+    }
+}
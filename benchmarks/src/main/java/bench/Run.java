@@ -0,0 +1,35 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The main class of benchmarks.jar: JMH's own command line, with the GC profiler
+ * always on so every benchmark reports its allocation rate.
+ * <pre>
+ *     java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regex]
+ *     java -jar benchmarks/target/benchmarks.jar StageBenchmark.endDist -p maze=perfect2k,perfect4k
+ * </pre>
+ */
+public class Run
+{
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions command = new CommandLineOptions(args);
+        if (command.shouldHelp() || command.shouldList() || command.shouldListProfilers()
+                || command.shouldListResultFormats() || command.shouldListWithParams()) {
+            // the listings are printed by JMH's own main
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        Options options = new OptionsBuilder()
+                .parent(command)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,229 @@
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The stages of solving a maze as Main did it, from loading the image to writing the
+ * solution, on every maze in examples/.
+ * <p>
+ * Each benchmark reports its throughput and, through the cells counter, the maze
+ * cells it processed per second, so the small and large mazes can be compared.  Run
+ * through bench.Run (the main class of benchmarks.jar) the GC profiler is added and
+ * the allocation rate of each stage is reported as well.  Run from the root of the
+ * project, the mazes are read from examples/ under the working directory.
+ * <p>
+ * BFS with the map of strings keeps an entry for every cell, which takes several GB
+ * for perfect4k and more than the default heap for combo6k; give the forks more with
+ * -jvmArgs -Xmx8g, or leave it out with -p maze=....
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StageBenchmark
+{
+    // the maze, loaded once per trial
+    @State(Scope.Benchmark)
+    public static class Maze
+    {
+        @Param({ "5x5", "10x10", "10x10test", "tiny", "small", "20x20", "normal", "braid200", "logo",
+                 "combo400", "blank", "fractal", "braid2k", "perfect2k", "perfect4k", "combo6k" })
+        public String maze;
+
+        File file;
+        BufferedImage image;
+
+        // 1 for open cells and 0 for walls, as Main.readMaze makes it
+        int[][] matrix;
+        int M, N;
+        long cells;
+
+        @Setup(Level.Trial)
+        public void load() {
+            file = Lee.exampleFile(maze);
+            image = Lee.createImage(file);
+            matrix = Lee.getPixels2D(image, 1);
+            for (int[] row : matrix)
+                for (int j = 0; j < row.length; j++)
+                    row[j] = row[j] == 255 ? 1 : 0;
+            M = matrix.length;
+            N = matrix[0].length;
+            cells = (long) M * N;
+        }
+
+        // a copy of the matrix to paint a route on
+        int[][] copy(int[][] into) {
+            for (int i = 0; i < M; i++)
+                System.arraycopy(matrix[i], 0, into[i], 0, N);
+            return into;
+        }
+    }
+
+    // a matrix the benchmarks that paint the route can overwrite
+    @State(Scope.Thread)
+    public static class Work
+    {
+        int[][] matrix;
+
+        @Setup(Level.Trial)
+        public void allocate(Maze maze) {
+            matrix = new int[maze.M][maze.N];
+        }
+    }
+
+    // the flood from the top left corner recorded in a parent array by BFSParents
+    @State(Scope.Benchmark)
+    public static class Parents
+    {
+        int[] parent;
+
+        @Setup(Level.Trial)
+        public void flood(Maze maze) {
+            parent = Lee.bfsParents(maze.matrix, 0, 0, maze.M-1, maze.N-1, maze.M, maze.N);
+        }
+    }
+
+    // the same flood recorded in a map of strings by BFS(..., foo)
+    @State(Scope.Benchmark)
+    public static class Closed
+    {
+        Map<?, ?> closed;
+
+        // whether the bottom right corner was reached, convertPath with the map fails if not
+        boolean reached;
+
+        @Setup(Level.Trial)
+        public void flood(Maze maze) {
+            closed = Lee.bfsMap(maze.matrix, 0, 0, maze.M-1, maze.N-1, maze.M, maze.N);
+            reached = closed.containsKey((maze.M-1) + " " + (maze.N-1));
+        }
+    }
+
+    // the solved maze for the PNG writers
+    @State(Scope.Benchmark)
+    public static class Solved
+    {
+        int[][] painted;
+        BufferedImage solution;
+        File out;
+
+        @Setup(Level.Trial)
+        public void solve(Maze maze) throws IOException {
+            painted = Lee.bfs(maze.copy(new int[maze.M][maze.N]), 0, 0, maze.M-1, maze.N-1, maze.M, maze.N);
+            Object grid = Lee.readGrid(maze.file);
+            solution = Lee.render(grid, Lee.solve(grid, 0, 0, maze.N-1, maze.M-1));
+            out = Files.createTempFile("solution", ".png").toFile();
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() {
+            out.delete();
+        }
+    }
+
+    // the maze cells processed, reported as cells per second
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Cells
+    {
+        public long cells;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            cells = 0;
+        }
+    }
+
+    @Benchmark
+    public BufferedImage createImage(Maze maze, Cells cells) {
+        cells.cells += maze.cells;
+        return Lee.createImage(maze.file);
+    }
+
+    @Benchmark
+    public int[][] getPixels2D(Maze maze, Cells cells) {
+        cells.cells += maze.cells;
+        return Lee.getPixels2D(maze.image, 1);
+    }
+
+    @Benchmark
+    public int endDist(Maze maze, Cells cells) {
+        cells.cells += maze.cells;
+        return Lee.endDist(maze.matrix, 0, 0, maze.M-1, maze.N-1, maze.M, maze.N);
+    }
+
+    // BFS paints the route on the matrix, so it runs on a fresh copy; copyMatrix is
+    // the cost of that copy
+    @Benchmark
+    public int[][] bfs(Maze maze, Work work, Cells cells) {
+        cells.cells += maze.cells;
+        return Lee.bfs(maze.copy(work.matrix), 0, 0, maze.M-1, maze.N-1, maze.M, maze.N);
+    }
+
+    @Benchmark
+    public int[][] copyMatrix(Maze maze, Work work, Cells cells) {
+        cells.cells += maze.cells;
+        return maze.copy(work.matrix);
+    }
+
+    @Benchmark
+    public Map<?, ?> bfsMap(Maze maze, Cells cells) {
+        cells.cells += maze.cells;
+        return Lee.bfsMap(maze.matrix, 0, 0, maze.M-1, maze.N-1, maze.M, maze.N);
+    }
+
+    @Benchmark
+    public int[] bfsParents(Maze maze, Cells cells) {
+        cells.cells += maze.cells;
+        return Lee.bfsParents(maze.matrix, 0, 0, maze.M-1, maze.N-1, maze.M, maze.N);
+    }
+
+    // convertPath only paints cells that are already on the route, so the matrix
+    // isn't copied
+    @Benchmark
+    public int[][] convertPathMap(Maze maze, Closed closed, Work work, Cells cells) {
+        cells.cells += maze.cells;
+        return closed.reached ? Lee.convertPath(maze.M, maze.N, closed.closed, work.matrix) : work.matrix;
+    }
+
+    @Benchmark
+    public int[][] convertPath(Maze maze, Parents parents, Work work, Cells cells) {
+        cells.cells += maze.cells;
+        return Lee.convertPath(maze.M, maze.N, parents.parent, work.matrix);
+    }
+
+    // the PNG write of the original Main, EasyBufferedImage on the painted matrix
+    @Benchmark
+    public void writePng(Maze maze, Solved solved, Cells cells) {
+        cells.cells += maze.cells;
+        Lee.savePng(Lee.createImage(solved.painted), solved.out);
+    }
+
+    // the 2 bit palette PNG that Main writes now
+    @Benchmark
+    public void writeSolution(Maze maze, Solved solved, Cells cells) {
+        cells.cells += maze.cells;
+        Lee.write(solved.solution, solved.out, 4);
+    }
+}
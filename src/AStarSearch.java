@@ -0,0 +1,90 @@
+/**
+ * A* search on a BitGrid with the Manhattan distance to the target as heuristic.
+ * <p>
+ * Where Lee's wave grows evenly in every direction, A* always expands the open
+ * cell with the smallest g + h (distance travelled plus Manhattan distance still
+ * to go), so it heads for the target and leaves most of the maze behind it.
+ * On a 4-connected unit cost grid a move changes h by exactly one, so g + h either
+ * stays the same or grows by two and the open list can be a BucketQueue spanning
+ * just a few keys.
+ * <p>
+ * Neither g nor the parent is stored while a cell waits in the queue: a queue
+ * entry packs the cell with the direction it was reached from, g is recovered as
+ * key - h, and a cell is closed (and its 2-bit parent direction recorded) the first
+ * time it is polled, which with a consistent heuristic is along a shortest route.
+ */
+class AStarSearch
+{
+    // Find the shortest route from (sx, sy) to (tx, ty).  Route cells are row-major
+    // (y * width + x).  Returns null if the destination can't be reached.
+    static Route solve(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        // queue entries are (bit index << 2 | direction)
+        if ((long) maze.open.length << 6 > 1 << 29)
+            throw new IllegalArgumentException("maze is too large for A*: " + maze.width + "x" + maze.height);
+
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+        if (source != target && !maze.isOpen(target))
+            return null;
+
+        long[] open = maze.open;
+        long[] visited = maze.visited;
+        maze.clearVisited();
+
+        long[] parentLo = new long[open.length];
+        long[] parentHi = new long[open.length];
+
+        int stride = maze.stride;
+        int[] offset = { -stride, -1, 1, stride };
+
+        BucketQueue q = new BucketQueue(4);
+        q.add(source << 2, Math.abs(sx - tx) + Math.abs(sy - ty));
+
+        int expanded = 0;
+
+        while (!q.isEmpty())
+        {
+            int f = q.minKey();
+            int entry = q.poll();
+            int cell = entry >>> 2;
+            int w = cell >>> 6;
+            long bit = 1L << cell;
+
+            if ((visited[w] & bit) != 0)
+                continue;
+
+            // closed: this is the shortest way to the cell
+            visited[w] |= bit;
+            int k = entry & 3;
+            if ((k & 1) != 0) parentLo[w] |= bit;
+            if ((k & 2) != 0) parentHi[w] |= bit;
+            expanded++;
+
+            if (cell == target) {
+                Route route = GridSearch.backtrace(maze, parentLo, parentHi, offset, target, f);
+                route.expanded = expanded;
+                return route;
+            }
+
+            int x = cell % stride;
+            int y = cell / stride - 1;
+            int g = f - Math.abs(x - tx) - Math.abs(y - ty);
+
+            for (k = 0; k < 4; k++)
+            {
+                int next = cell + offset[k];
+                int nw = next >>> 6;
+                long nbit = 1L << next;
+                if ((open[nw] & ~visited[nw] & nbit) == 0)
+                    continue;
+
+                int nx = x + (k == 1 ? -1 : k == 2 ? 1 : 0);
+                int ny = y + (k == 0 ? -1 : k == 3 ? 1 : 0);
+                q.add(next << 2 | k, g + 1 + Math.abs(nx - tx) + Math.abs(ny - ty));
+            }
+        }
+
+        return null;
+    }
+}
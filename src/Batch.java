@@ -0,0 +1,263 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves many mazes in one JVM, several at a time, so a nightly run pays for the
+ * JVM start and the JIT warm up once instead of once per maze.
+ * <p>
+ * The mazes come from a directory (every .png and .maze file in it, corner to corner
+ * or between the endpoints in the maze file) or from a manifest, a text file with one
+ * maze a line and optionally its endpoints, or auto for the first and last openings
+ * in its border:
+ * <pre>
+ *     # maze              sx  sy    tx    ty
+ *     perfect4k.png
+ *     combo6k.png          1   1  5999  5999
+ *     braid2k.png        auto
+ * </pre>
+ * Relative paths in a manifest are relative to the manifest.  Each solution is
+ * written to the output directory as name.solution.png, and a table of the timings
+ * is printed and written there as summary.tsv.
+ * <p>
+ * The mazes are solved on a fixed pool of threads.  Before a maze is loaded its
+ * size is read from its header and the heap it needs is estimated from the solver's
+ * bytes per cell (Solver.bytesPerCell, 4 for Lee's wave and up to 64 for JUNCTIONS),
+ * and it waits on a semaphore holding the memory budget until that much is free.  A
+ * handful of small mazes run side by side, while two 6k mazes (144 MB each with Lee)
+ * only run together if the budget allows it.  A maze larger than the whole budget
+ * runs on its own.
+ * <p>
+ * The heap pools' peak usage is global, so what each solve used is taken from the
+ * bytes its thread allocated (SolveStats.allocated) and written to summary.tsv; the
+ * summary also gives the most memory admitted at once.
+ * <p>
+ * Usage:  java Batch directory|manifest [solver] [threads] [budget MB] [output directory]
+ * (defaults: lee, one thread per core, three quarters of the maximum heap, solutions)
+ */
+class Batch
+{
+    private static final long MB = 1 << 20;
+
+    // a maze to solve and its result
+    static class Job
+    {
+        final File file;
+        final int[] ends;     // { sx, sy, tx, ty }, Main.OPENINGS or null for the default ones
+
+        // estimated heap needed, in MB
+        int megabytes;
+
+        SolveStats stats;
+        Throwable error;
+
+        // nanoseconds spent waiting for memory
+        long waited;
+
+        Job(File file, int[] ends) {
+            this.file = file;
+            this.ends = ends;
+        }
+    }
+
+    private final Solver solver;
+    private final File out;
+
+    private final int budget;
+    private final Semaphore memory;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicInteger peakAdmitted = new AtomicInteger();
+
+    Batch(Solver solver, int budget, File out)
+    {
+        this.solver = solver;
+        this.budget = budget;
+        this.memory = new Semaphore(budget, true);
+        this.out = out;
+    }
+
+    // The mazes of a directory or a manifest
+    static List<Job> jobs(File source) throws IOException
+    {
+        List<Job> jobs = new ArrayList<>();
+        if (source.isDirectory()) {
+            File[] files = source.listFiles((dir, name) -> name.endsWith(".png") || name.endsWith(MazeFile.EXTENSION));
+            Arrays.sort(files);
+            for (File file : files)
+                jobs.add(new Job(file, null));
+            return jobs;
+        }
+
+        File base = source.getAbsoluteFile().getParentFile();
+        try (BufferedReader in = new BufferedReader(new FileReader(source))) {
+            String line;
+            for (int number = 1; (line = in.readLine()) != null; number++) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] fields = line.split("\\s+");
+                boolean auto = fields.length == 2 && fields[1].equalsIgnoreCase("auto");
+                if (fields.length != 1 && fields.length != 5 && !auto)
+                    throw new IOException(source.getName() + " line " + number + ": expected a maze and optionally sx sy tx ty or auto");
+
+                File file = new File(fields[0]);
+                if (!file.isAbsolute())
+                    file = new File(base, fields[0]);
+                int[] ends = auto ? Main.OPENINGS : null;
+                if (fields.length == 5) {
+                    ends = new int[4];
+                    for (int k = 0; k < 4; k++)
+                        ends[k] = Integer.parseInt(fields[k + 1]);
+                }
+                jobs.add(new Job(file, ends));
+            }
+        }
+        return jobs;
+    }
+
+    // Solves the jobs on threads threads, returning when all of them are done
+    void run(List<Job> jobs, int threads) throws InterruptedException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (final Job job : jobs)
+                done.add(pool.submit(() -> solve(job)));
+            for (Future<?> future : done) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // solve records its own failures, this is a bug in it
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Solves one maze once the memory it needs has been admitted
+    private void solve(Job job)
+    {
+        try {
+            job.megabytes = (int) Math.min(budget, estimate(job.file, solver) / MB + 1);
+        } catch (IOException | RuntimeException e) {
+            job.error = e;
+            return;
+        }
+
+        long start = System.nanoTime();
+        memory.acquireUninterruptibly(job.megabytes);
+        job.waited = System.nanoTime() - start;
+        peakAdmitted.accumulateAndGet(admitted.addAndGet(job.megabytes), Math::max);
+        try {
+            // the name without its extension, if it has one
+            String name = job.file.getName();
+            if (name.lastIndexOf('.') > 0)
+                name = name.substring(0, name.lastIndexOf('.'));
+            job.stats = Main.solve(job.file, solver, job.ends, new File(out, name + ".solution.png"));
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            job.error = e;
+        } finally {
+            admitted.addAndGet(-job.megabytes);
+            memory.release(job.megabytes);
+        }
+    }
+
+    // Bytes of heap a maze is expected to need with a solver, its bytes per cell plus a few MB
+    static long estimate(File file, Solver solver) throws IOException
+    {
+        long cells;
+        if (MazeFile.isMazeFile(file)) {
+            try (MazeFile maze = MazeFile.open(file)) {
+                cells = (long) maze.width * maze.height;
+            }
+        } else {
+            int[] size = PngMazeReader.size(file);
+            cells = (long) size[0] * size[1];
+        }
+        return cells * solver.bytesPerCell + 4 * MB;
+    }
+
+    // Prints the table of results and writes it to summary.tsv in the output directory
+    void summarize(List<Job> jobs, long wallNanos) throws IOException
+    {
+        String header = String.format("%-24s %11s %8s %10s %10s %10s %10s %10s %10s  %s",
+                "maze", "size", "length", "load ms", "search ms", "image ms", "write ms", "total ms", "wait ms", "status");
+        System.out.println(header);
+
+        long solveNanos = 0;
+        int solved = 0;
+        try (PrintWriter tsv = new PrintWriter(new File(out, "summary.tsv"))) {
+            tsv.println("maze\twidth\theight\tlength\texpanded\tload_ns\tsearch_ns\tconvert_ns\tmark_ns\twrite_ns\ttotal_ns\tallocated_bytes\twait_ns\tstatus");
+            for (Job job : jobs)
+            {
+                SolveStats s = job.stats;
+                String status = job.error != null ? "failed: " + job.error
+                        : s.route == null ? "unreachable" : "solved";
+                if (s == null) {
+                    System.out.printf("%-24s %11s %8s %10s %10s %10s %10s %10s %10.1f  %s%n",
+                            job.file.getName(), "", "", "", "", "", "", "", job.waited / 1e6, status);
+                    tsv.printf("%s\t\t\t\t\t\t\t\t\t\t\t\t%d\t%s%n", job.file.getName(), job.waited, status);
+                    continue;
+                }
+
+                long image = s.nanos(SolveStats.Phase.CONVERT) + s.nanos(SolveStats.Phase.MARK);
+                int length = s.route == null ? -1 : s.route.length;
+                System.out.printf("%-24s %11s %8d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f  %s%n",
+                        job.file.getName(), s.width + "x" + s.height, length,
+                        s.nanos(SolveStats.Phase.LOAD) / 1e6, s.nanos(SolveStats.Phase.SEARCH) / 1e6, image / 1e6,
+                        s.nanos(SolveStats.Phase.WRITE) / 1e6, s.totalNanos() / 1e6, job.waited / 1e6, status);
+                tsv.printf("%s\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%s%n",
+                        job.file.getName(), s.width, s.height, length, s.route == null ? 0 : s.route.expanded,
+                        s.nanos(SolveStats.Phase.LOAD), s.nanos(SolveStats.Phase.SEARCH),
+                        s.nanos(SolveStats.Phase.CONVERT), s.nanos(SolveStats.Phase.MARK),
+                        s.nanos(SolveStats.Phase.WRITE), s.totalNanos(), s.allocated, job.waited, status);
+
+                solveNanos += s.totalNanos();
+                if (job.error == null)
+                    solved++;
+            }
+        }
+
+        System.out.printf("%n%d of %d mazes finished in %.1f s (%.1f s of solving), at most %d of %d MB admitted at once%n",
+                solved, jobs.size(), wallNanos / 1e9, solveNanos / 1e9, peakAdmitted.get(), budget);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length == 0) {
+            System.out.println("usage: java Batch directory|manifest [solver] [threads] [budget MB] [output directory]");
+            return;
+        }
+
+        File source = new File(args[0]);
+        Solver solver = Solver.valueOf((args.length > 1 ? args[1] : "lee").toUpperCase());
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int budget = args.length > 3 ? Integer.parseInt(args[3]) : (int) (Runtime.getRuntime().maxMemory() / MB * 3 / 4);
+        File out = new File(args.length > 4 ? args[4] : "solutions");
+        if (!out.isDirectory() && !out.mkdirs())
+            throw new IOException("can't create " + out);
+
+        List<Job> jobs = jobs(source);
+        System.out.println("Solving " + jobs.size() + " mazes with " + solver + " on " + threads
+                + " threads in " + budget + " MB\n");
+
+        Batch batch = new Batch(solver, budget, out);
+        long start = System.nanoTime();
+        batch.run(jobs, threads);
+        batch.summarize(jobs, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,538 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.ImageIO;
+
+/**
+ * A small timing harness for comparing the solvers on the example mazes.  Each
+ * case is warmed up before it is timed and the best of several runs is reported,
+ * together with the number of maze cells processed per second.
+ * <p>
+ * Usage:  java Benchmark [load|raster|render|engine|paths|solve|parallel|route|short|junctions|reach|weighted|stencils|dynamic] [-map] [maze ...]
+ * (defaults to every suite on perfect4k and combo6k, -map adds Main's map of strings to paths)
+ */
+class Benchmark
+{
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+
+    // a single timed case
+    interface Case
+    {
+        void run() throws IOException;
+    }
+
+    // Runs a case WARMUP + RUNS times and prints the best time and cells per second
+    static long time(String label, long cells, Case c) throws IOException
+    {
+        for (int k = 0; k < WARMUP; k++)
+            c.run();
+
+        long best = Long.MAX_VALUE;
+        for (int k = 0; k < RUNS; k++) {
+            long start = System.nanoTime();
+            c.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        System.out.printf("  %-28s %10.2f ms %10.1f Mcells/s%n",
+                label, best / 1e6, cells * 1e3 / best);
+        return best;
+    }
+
+    // Compares the Node based searches in Main against GridSearch
+    static void engines(String imageName) throws IOException
+    {
+        final int[][] maze = Main.readMaze(Main.exampleFile(imageName));
+        final int M = maze.length, N = maze[0].length;
+        long cells = (long) M * N;
+
+        System.out.println(imageName + " (" + N + "x" + M + ")");
+        time("Main.endDist", cells, () -> Main.endDist(maze, 0, 0, M-1, N-1, M, N));
+        time("GridSearch.endDist", cells, () -> GridSearch.endDist(maze, 0, 0, M-1, N-1, M, N));
+        time("Main.solve", cells, () -> Main.solve(maze, 0, 0, M-1, N-1, M, N));
+        time("GridSearch.solve", cells, () -> GridSearch.solve(maze, 0, 0, M-1, N-1, M, N));
+
+        final BitGrid grid = BitGrid.fromMatrix(maze);
+        time("GridSearch.solve(BitGrid)", cells, () -> GridSearch.solve(grid, 0, 0, N-1, M-1));
+    }
+
+    // Times flooding the whole maze and marking the path to the far corner with Main's
+    // primitive parent array, and with its map of strings if withMap is set (it needs
+    // several GB of heap for perfect4k)
+    static void paths(String imageName, boolean withMap) throws IOException
+    {
+        final int[][] maze = Main.readMaze(Main.exampleFile(imageName));
+        final int M = maze.length, N = maze[0].length;
+        long cells = (long) M * N;
+
+        // convertPath paints on the matrix, so each run gets a fresh copy
+        final int[][] copy = new int[M][];
+
+        System.out.println(imageName + " paths");
+        time("Main.BFSParents+convertPath", cells, () -> {
+            for (int r = 0; r < M; r++)
+                copy[r] = maze[r].clone();
+            Main.convertPath(M, N, Main.BFSParents(copy, 0, 0, M-1, N-1, M, N), copy);
+        });
+        if (withMap)
+            time("Main.BFS map+convertPath", cells, () -> {
+                for (int r = 0; r < M; r++)
+                    copy[r] = maze[r].clone();
+                Main.convertPath(M, N, Main.BFS(copy, 0, 0, M-1, N-1, M, N, 0), copy);
+            });
+    }
+
+    // Times every Solver on the packed maze and reports how many cells each one expanded
+    static void solvers(String imageName) throws IOException
+    {
+        final BitGrid grid = PngMazeReader.read(Main.exampleFile(imageName));
+        long cells = (long) grid.width * grid.height;
+
+        System.out.println(imageName + " solvers (" + grid.countOpen() + " open cells)");
+        for (final Solver solver : Solver.values()) {
+            Route route = solver.solve(grid, 0, 0, grid.width-1, grid.height-1);
+            time(solver.toString(), cells, () -> solver.solve(grid, 0, 0, grid.width-1, grid.height-1));
+            System.out.printf("  %-28s %10d cells expanded, length %d%n", "", route.expanded, route.length);
+        }
+    }
+
+    // Times ParallelSearch with 1, 2, 4, 8 and 16 threads against the sequential GridSearch
+    static void parallel(String imageName) throws IOException
+    {
+        final BitGrid grid = PngMazeReader.read(Main.exampleFile(imageName));
+        long cells = (long) grid.width * grid.height;
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println(imageName + " parallel (" + cores + " cores"
+                + (cores == 1 ? ", so the threads only take turns" : "") + ")");
+        time("GridSearch", cells, () -> GridSearch.solve(grid, 0, 0, grid.width-1, grid.height-1));
+        for (int threads = 1; threads <= 16; threads *= 2) {
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                time("ParallelSearch " + threads + " threads", cells,
+                        () -> ParallelSearch.solve(grid, 0, 0, grid.width-1, grid.height-1, pool));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // Times QUERIES route queries from a few sources, each searched from scratch by
+    // GridSearch and then answered by a MazeRouter, cold and with its cache warm
+    static void routing(String imageName) throws IOException
+    {
+        final int QUERIES = 40, SOURCES = 4;
+        final BitGrid grid = PngMazeReader.read(Main.exampleFile(imageName));
+        long cells = (long) grid.width * grid.height;
+
+        // random open endpoints, the same every run
+        final int[] x = new int[QUERIES + SOURCES], y = new int[QUERIES + SOURCES];
+        Random random = new Random(42);
+        for (int k = 0; k < x.length; k++) {
+            do {
+                x[k] = random.nextInt(grid.width);
+                y[k] = random.nextInt(grid.height);
+            } while (!grid.isOpen(x[k], y[k]));
+        }
+
+        System.out.println(imageName + " routing (" + QUERIES + " queries from " + SOURCES + " sources)");
+        time("GridSearch.solve", cells, () -> {
+            for (int q = 0; q < QUERIES; q++)
+                GridSearch.solve(grid, x[q % SOURCES], y[q % SOURCES], x[SOURCES + q], y[SOURCES + q]);
+        });
+        time("MazeRouter cold", cells, () -> {
+            MazeRouter router = new MazeRouter(Long.MAX_VALUE);
+            for (int q = 0; q < QUERIES; q++)
+                router.route(grid, x[q % SOURCES], y[q % SOURCES], x[SOURCES + q], y[SOURCES + q]);
+        });
+        final MazeRouter router = new MazeRouter(Long.MAX_VALUE);
+        time("MazeRouter warm", cells, () -> {
+            for (int q = 0; q < QUERIES; q++)
+                router.route(grid, x[q % SOURCES], y[q % SOURCES], x[SOURCES + q], y[SOURCES + q]);
+        });
+        System.out.printf("  %-28s %s%n", "", router);
+    }
+
+    // Times QUERIES short queries, between random open cells joined by a route of at
+    // most 4 * REACH steps, on searches that start from a cleared maze every time and
+    // on a SearchContext that reuses its state
+    static void shortQueries(String imageName) throws IOException
+    {
+        final int QUERIES = 200, REACH = 10;
+        final int[][] maze = Main.readMaze(Main.exampleFile(imageName));
+        final int M = maze.length, N = maze[0].length;
+        final BitGrid grid = BitGrid.fromMatrix(maze);
+        final SearchContext context = new SearchContext(M, N);
+        long cells = (long) M * N;
+
+        // random open endpoints at most REACH cells apart in each direction, the same
+        // every run, as rows i and columns j; pairs with a long way round are skipped
+        final int[] i = new int[2 * QUERIES], j = new int[2 * QUERIES];
+        Random random = new Random(42);
+        for (int q = 0; q < QUERIES; ) {
+            do {
+                i[2*q] = random.nextInt(M);
+                j[2*q] = random.nextInt(N);
+            } while (maze[i[2*q]][j[2*q]] != 1);
+            do {
+                i[2*q+1] = Math.max(0, Math.min(M-1, i[2*q] + random.nextInt(2*REACH+1) - REACH));
+                j[2*q+1] = Math.max(0, Math.min(N-1, j[2*q] + random.nextInt(2*REACH+1) - REACH));
+            } while (maze[i[2*q+1]][j[2*q+1]] != 1);
+            if (context.endDist(maze, i[2*q], j[2*q], i[2*q+1], j[2*q+1]) <= 4 * REACH)
+                q++;
+        }
+
+        System.out.println(imageName + " short queries (" + QUERIES + " routes of at most " + 4 * REACH + " steps)");
+        time("Main.endDist", cells, () -> {
+            for (int q = 0; q < QUERIES; q++)
+                Main.endDist(maze, i[2*q], j[2*q], i[2*q+1], j[2*q+1], M, N);
+        });
+        time("GridSearch.solve", cells, () -> {
+            for (int q = 0; q < QUERIES; q++)
+                GridSearch.solve(maze, i[2*q], j[2*q], i[2*q+1], j[2*q+1], M, N);
+        });
+        time("GridSearch.solve(BitGrid)", cells, () -> {
+            for (int q = 0; q < QUERIES; q++)
+                GridSearch.solve(grid, j[2*q], i[2*q], j[2*q+1], i[2*q+1]);
+        });
+        time("SearchContext.solve", cells, () -> {
+            for (int q = 0; q < QUERIES; q++)
+                context.solve(maze, i[2*q], j[2*q], i[2*q+1], j[2*q+1]);
+        });
+    }
+
+    // Times contracting a maze to a JunctionGraph, reading it back from a maze file, and
+    // QUERIES queries between random open cells on it against GridSearch
+    static void junctions(String imageName) throws IOException
+    {
+        final int QUERIES = 40;
+        final BitGrid grid = PngMazeReader.read(Main.exampleFile(imageName));
+        long cells = (long) grid.width * grid.height;
+
+        // random open endpoints, the same every run
+        final int[] x = new int[2 * QUERIES], y = new int[2 * QUERIES];
+        Random random = new Random(42);
+        for (int k = 0; k < x.length; k++) {
+            do {
+                x[k] = random.nextInt(grid.width);
+                y[k] = random.nextInt(grid.height);
+            } while (!grid.isOpen(x[k], y[k]));
+        }
+
+        final JunctionGraph graph = JunctionGraph.build(grid);
+        System.out.printf("%s junctions (%d nodes, %d corridors, %d nodes left after pruning, %.1f MB)%n",
+                imageName, graph.nodeCount(), graph.edgeCount(), graph.coreCount(), graph.sizeInBytes() / 1e6);
+        time("JunctionGraph.build", cells, () -> JunctionGraph.build(grid));
+
+        final File mazeFile = File.createTempFile("maze", MazeFile.EXTENSION);
+        mazeFile.deleteOnExit();
+        MazeFile.write(mazeFile, grid, 0, 0, grid.width-1, grid.height-1, false, true);
+        time("MazeFile.graph (cached)", cells, () -> {
+            try (MazeFile maze = MazeFile.open(mazeFile)) {
+                maze.graph(grid);
+            }
+        });
+
+        time("GridSearch.solve x" + QUERIES, cells, () -> {
+            for (int q = 0; q < QUERIES; q++)
+                GridSearch.solve(grid, x[2*q], y[2*q], x[2*q+1], y[2*q+1]);
+        });
+        time("JunctionGraph.route x" + QUERIES, cells, () -> {
+            for (int q = 0; q < QUERIES; q++)
+                graph.route(x[2*q], y[2*q], x[2*q+1], y[2*q+1]);
+        });
+    }
+
+    // Times labelling the components with 1, 2, 4 and 8 threads against one flood of the
+    // maze, and QUERIES queries between open cells in different components answered by
+    // GridSearch and by the labels
+    static void reach(String imageName) throws IOException
+    {
+        final int QUERIES = 20;
+        final BitGrid grid = PngMazeReader.read(Main.exampleFile(imageName));
+        long cells = (long) grid.width * grid.height;
+
+        final Components components = Components.label(grid);
+        System.out.println(imageName + " reach (" + components.count() + " components)");
+        time("GridSearch.flood", cells,
+                () -> GridSearch.flood(grid, 0, 0, new long[grid.open.length], new long[grid.open.length]));
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                time("Components.label " + threads + " threads", cells, () -> Components.label(grid, pool));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        // random open endpoints that can't reach each other, the same every run; a
+        // maze that is all one component has none
+        final int[] x = new int[2 * QUERIES], y = new int[2 * QUERIES];
+        Random random = new Random(42);
+        int n = 0;
+        for (int tries = 0; n < QUERIES && tries < 100 * QUERIES; tries++) {
+            for (int k = 2 * n; k < 2 * n + 2; k++) {
+                do {
+                    x[k] = random.nextInt(grid.width);
+                    y[k] = random.nextInt(grid.height);
+                } while (!grid.isOpen(x[k], y[k]));
+            }
+            if (!components.connected(x[2*n], y[2*n], x[2*n+1], y[2*n+1]))
+                n++;
+        }
+        if (n == 0)
+            return;
+
+        final int queries = n;
+        time("GridSearch.solve x" + queries, cells, () -> {
+            for (int q = 0; q < queries; q++)
+                GridSearch.solve(grid, x[2*q], y[2*q], x[2*q+1], y[2*q+1]);
+        });
+        time("Components.connected x" + queries, cells, () -> {
+            for (int q = 0; q < queries; q++)
+                components.connected(x[2*q], y[2*q], x[2*q+1], y[2*q+1]);
+        });
+    }
+
+    // Times CostSearch corner to corner against a binary heap Dijkstra, with the maze's
+    // open cells given random gray levels of at least 128 and with two random levels
+    static void weighted(String imageName) throws IOException
+    {
+        final int[][] gray = Main.readMaze(Main.exampleFile(imageName));
+        long cells = (long) gray.length * gray[0].length;
+
+        // the same levels every run; readMaze leaves open cells 1 and walls 0
+        Random random = new Random(42);
+        final int[][] twoLevels = new int[gray.length][];
+        for (int i = 0; i < gray.length; i++) {
+            twoLevels[i] = new int[gray[i].length];
+            for (int j = 0; j < gray[i].length; j++) {
+                if (gray[i][j] == 0)
+                    continue;
+                twoLevels[i][j] = random.nextInt(4) == 0 ? 200 : 255;
+                gray[i][j] = 128 + random.nextInt(128);
+            }
+        }
+
+        for (final CostGrid grid : new CostGrid[] { CostGrid.fromPixels(gray, CostGrid.DEFAULT_THRESHOLD, false),
+                                                    CostGrid.fromPixels(twoLevels, CostGrid.DEFAULT_THRESHOLD, true) }) {
+            final int tx = grid.width-1, ty = grid.height-1;
+            Route route = CostSearch.solve(grid, 0, 0, tx, ty);
+            System.out.println(imageName + " weighted (costs up to " + grid.maxCost + ", cheapest route "
+                    + (route == null ? "none" : route.cost + " over " + route.length + " steps") + ")");
+            if (grid.maxCost <= 1)
+                time("CostSearch.zeroOne", cells, () -> CostSearch.zeroOne(grid, 0, 0, tx, ty));
+            time("CostSearch.dial", cells, () -> CostSearch.dial(grid, 0, 0, tx, ty));
+            time("CostSearch.heap", cells, () -> CostSearch.heap(grid, 0, 0, tx, ty));
+        }
+    }
+
+    // Times every Stencil corner to corner on the padded grid against the same search
+    // bounds checking every neighbour (StencilSearch.checked) and Main's isValid path
+    static void stencils(String imageName) throws IOException
+    {
+        final int[][] maze = Main.readMaze(Main.exampleFile(imageName));
+        final int M = maze.length, N = maze[0].length;
+        final BitGrid grid = BitGrid.fromMatrix(maze);
+        long cells = (long) M * N;
+
+        System.out.println(imageName + " stencils");
+        time("Main.solve (isValid)", cells, () -> Main.solve(maze, 0, 0, M-1, N-1, M, N));
+        for (final Stencil stencil : Stencil.values()) {
+            Route route = stencil.solve(grid, 0, 0, N-1, M-1);
+            time(stencil + " checked", cells, () -> StencilSearch.checked(maze, stencil, 0, 0, M-1, N-1, M, N));
+            time(stencil + " padded", cells, () -> stencil.solve(grid, 0, 0, N-1, M-1));
+            if (route != null)
+                System.out.printf("  %-28s %10d cells expanded, %d steps, cost %d%n", "", route.expanded, route.length, route.cost);
+        }
+    }
+
+    // Times repairing the corner to corner route with DynamicSearch after a few cells are
+    // toggled, near the route and anywhere in the maze, and again after they are toggled
+    // back, against GridSearch searching the edited maze again
+    static void dynamic(String imageName) throws IOException
+    {
+        final BitGrid grid = PngMazeReader.read(Main.exampleFile(imageName));
+        final int tx = grid.width-1, ty = grid.height-1;
+        long cells = (long) grid.width * grid.height;
+
+        long start = System.nanoTime();
+        DynamicSearch search = new DynamicSearch(grid, 0, 0, tx, ty);
+        Route route = search.route();
+        System.out.printf("%s dynamic (first route %.1f ms, %d cells settled, %.1f MB)%n", imageName,
+                (System.nanoTime() - start) / 1e6, route.expanded, search.sizeInBytes() / 1e6);
+        time("GridSearch.solve", cells, () -> GridSearch.solve(grid, 0, 0, tx, ty));
+
+        // the same edits every run
+        Random random = new Random(42);
+        repairs(search, route, random, true);
+        repairs(search, route, random, false);
+    }
+
+    // Toggles batches of cells within 3 of a cell of route, or anywhere, repairing the route
+    // after each batch and after undoing it, and prints the median, mean and longest repair
+    private static void repairs(DynamicSearch search, Route route, Random random, boolean nearRoute)
+    {
+        final int BATCHES = 20, EDITS = 4;
+        BitGrid grid = search.maze;
+        int[] x = new int[EDITS], y = new int[EDITS];
+
+        long[] took = new long[2 * BATCHES];
+        long settled = 0;
+        int wrong = 0;
+        for (int b = 0; b < 2 * BATCHES; b++) {
+            // odd batches undo the one before
+            if (b % 2 == 0) {
+                int at = route.cells[random.nextInt(route.cells.length)];
+                for (int e = 0; e < EDITS; e++) {
+                    x[e] = nearRoute ? Math.max(0, Math.min(grid.width-1, at % grid.width + random.nextInt(7) - 3))
+                            : random.nextInt(grid.width);
+                    y[e] = nearRoute ? Math.max(0, Math.min(grid.height-1, at / grid.width + random.nextInt(7) - 3))
+                            : random.nextInt(grid.height);
+                }
+            }
+            for (int e = 0; e < EDITS; e++)
+                search.toggle(x[e], y[e]);
+
+            long start = System.nanoTime();
+            Route repaired = search.route();
+            took[b] = System.nanoTime() - start;
+            if (repaired != null)
+                settled += repaired.expanded;
+
+            Route fresh = GridSearch.solve(grid, search.sx, search.sy, search.tx, search.ty);
+            if (repaired == null ? fresh != null : fresh == null || fresh.length != repaired.length)
+                wrong++;
+        }
+        long total = 0;
+        for (long t : took)
+            total += t;
+        Arrays.sort(took);
+        System.out.printf("  %-28s %10.2f ms median, %.2f ms mean, %.2f ms longest, %d cells settled%s%n",
+                "DynamicSearch " + EDITS + (nearRoute ? " near x" : " anywhere x") + 2 * BATCHES,
+                took[BATCHES] / 1e6, total / 1e6 / (2 * BATCHES), took[2 * BATCHES - 1] / 1e6,
+                settled / (2 * BATCHES), wrong == 0 ? "" : ", " + wrong + " wrong lengths");
+    }
+
+    // Compares loading a maze through EasyBufferedImage against PngMazeReader and MazeFile
+    static void loaders(String imageName) throws IOException
+    {
+        final File file = Main.exampleFile(imageName);
+        BitGrid grid = PngMazeReader.read(file);
+        long cells = (long) grid.width * grid.height;
+        grid = null;
+
+        System.out.println(imageName + " load");
+        time("Main.readMaze", cells, () -> Main.readMaze(file));
+        time("BitGrid.fromImage", cells, () -> BitGrid.fromImage(EasyBufferedImage.createImage(file), 1));
+        time("PngMazeReader.read", cells, () -> PngMazeReader.read(file));
+
+        final File mazeFile = File.createTempFile("maze", MazeFile.EXTENSION);
+        mazeFile.deleteOnExit();
+        grid = PngMazeReader.read(file);
+        MazeFile.write(mazeFile, grid, 0, 0, grid.width-1, grid.height-1, true);
+        grid = null;
+        time("MazeFile.toGrid", cells, () -> {
+            try (MazeFile maze = MazeFile.open(mazeFile)) {
+                maze.toGrid();
+            }
+        });
+        time("MazeFile.route (cached tree)", cells, () -> {
+            try (MazeFile maze = MazeFile.open(mazeFile)) {
+                maze.route(maze.tx, maze.ty);
+            }
+        });
+    }
+
+    // Times the EasyBufferedImage conversions to and from pixel arrays
+    static void raster(String imageName) throws IOException
+    {
+        final EasyBufferedImage image = EasyBufferedImage.createImage(Main.exampleFile(imageName));
+        final int[][] pixels = image.getPixels2D(EasyBufferedImage.GREEN);
+        long cells = (long) image.getWidth() * image.getHeight();
+
+        System.out.println(imageName + " raster");
+        time("getPixels2D(GREEN)", cells, () -> image.getPixels2D(EasyBufferedImage.GREEN));
+        time("getPixels2D(GRAY)", cells, () -> image.getPixels2D(EasyBufferedImage.GRAY));
+        time("getPixels1D(GREEN)", cells, () -> image.getPixels1D(EasyBufferedImage.GREEN));
+        time("setPixels(int[][], GREEN)", cells, () -> image.setPixels(pixels, EasyBufferedImage.GREEN));
+        time("setPixels(int[][], GRAY)", cells, () -> image.setPixels(pixels, EasyBufferedImage.GRAY));
+        time("createImage(int[][])", cells, () -> EasyBufferedImage.createImage(pixels));
+    }
+
+    // Compares writing the solution through an int[][] and EasyBufferedImage against SolutionWriter
+    static void render(String imageName) throws IOException
+    {
+        final BitGrid grid = PngMazeReader.read(Main.exampleFile(imageName));
+        final Route route = GridSearch.solve(grid, 0, 0, grid.width-1, grid.height-1);
+        final File out = File.createTempFile("solution", ".png");
+        out.deleteOnExit();
+        long cells = (long) grid.width * grid.height;
+
+        System.out.println(imageName + " render");
+        time("createImage(int[][])", cells, () -> {
+            int[][] maze = grid.toPixels();
+            for (int cell : route.cells)
+                maze[cell / grid.width][cell % grid.width] = 128;
+            EasyBufferedImage.createImage(maze);
+        });
+        time("SolutionWriter.render", cells, () -> SolutionWriter.render(grid, route));
+        time("createImage + ImageIO.write", cells, () -> {
+            int[][] maze = grid.toPixels();
+            for (int cell : route.cells)
+                maze[cell / grid.width][cell % grid.width] = 128;
+            ImageIO.write(EasyBufferedImage.createImage(maze), "PNG", out);
+        });
+        for (int level : new int[] { 1, SolutionWriter.DEFAULT_LEVEL, 9 })
+            time("SolutionWriter.write level " + level, cells,
+                    () -> SolutionWriter.write(SolutionWriter.render(grid, route), out, level));
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        List<String> suites = new ArrayList<>(Arrays.asList("load", "raster", "render", "engine", "paths", "solve", "parallel", "route", "short", "junctions", "reach", "weighted", "stencils", "dynamic"));
+        List<String> mazes = new ArrayList<>(Arrays.asList(args));
+        if (!mazes.isEmpty() && suites.contains(mazes.get(0)))
+            suites.retainAll(Collections.singleton(mazes.remove(0)));
+        boolean withMap = mazes.remove("-map");
+        if (mazes.isEmpty())
+            mazes = Arrays.asList("perfect4k", "combo6k");
+
+        for (String imageName : mazes) {
+            if (suites.contains("load"))
+                loaders(imageName);
+            if (suites.contains("raster"))
+                raster(imageName);
+            if (suites.contains("render"))
+                render(imageName);
+            if (suites.contains("engine"))
+                engines(imageName);
+            if (suites.contains("paths"))
+                paths(imageName, withMap);
+            if (suites.contains("solve"))
+                solvers(imageName);
+            if (suites.contains("parallel"))
+                parallel(imageName);
+            if (suites.contains("route"))
+                routing(imageName);
+            if (suites.contains("short"))
+                shortQueries(imageName);
+            if (suites.contains("junctions"))
+                junctions(imageName);
+            if (suites.contains("reach"))
+                reach(imageName);
+            if (suites.contains("weighted"))
+                weighted(imageName);
+            if (suites.contains("stencils"))
+                stencils(imageName);
+            if (suites.contains("dynamic"))
+                dynamic(imageName);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Lee's wave expansion run from both ends at once.
+ * <p>
+ * One wave is grown from the source and one from the target, always advancing the
+ * side whose wavefront is smaller by a whole layer.  The source side marks cells in
+ * the grid's visited plane and the target side in a plane of its own, so the two
+ * visited sets stay disjoint until a cell being expanded on one side finds a
+ * neighbour the other side has already marked.  At that moment the neighbour lies
+ * on the other side's current wavefront, and the route through it is a shortest
+ * one: its length is the depth of the expanding layer plus the depth of the other
+ * side's wavefront.  Each half of the route is read back from its own 2-bit parent
+ * directions.
+ * <p>
+ * In an open or braided maze each wave only has to reach about half way, which
+ * covers far fewer cells than one wave reaching all the way to the target.
+ */
+class BidirectionalSearch
+{
+    // Find the shortest route from (sx, sy) to (tx, ty).  Route cells are row-major
+    // (y * width + x).  Returns null if the destination can't be reached.
+    static Route solve(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+
+        // like GridSearch, a wall can be left but never entered
+        if (source != target && !maze.isOpen(target))
+            return null;
+        if (source == target) {
+            Route route = new Route(0, new int[] { maze.cell(source) });
+            route.expanded = 0;
+            return route;
+        }
+
+        long[] open = maze.open;
+        maze.clearVisited();
+
+        // side 0 grows from the source, side 1 from the target
+        long[][] visited = { maze.visited, new long[open.length] };
+        long[][] parentLo = { new long[open.length], new long[open.length] };
+        long[][] parentHi = { new long[open.length], new long[open.length] };
+        IntQueue[] q = { new IntQueue(maze.width + maze.height), new IntQueue(maze.width + maze.height) };
+        int[] depth = { 0, 0 };
+
+        int[] offset = { -maze.stride, -1, 1, maze.stride };
+
+        visited[0][source >>> 6] |= 1L << source;
+        visited[1][target >>> 6] |= 1L << target;
+        q[0].add(source);
+        q[1].add(target);
+
+        int expanded = 0;
+
+        while (!q[0].isEmpty() && !q[1].isEmpty())
+        {
+            // advance the side with the smaller wavefront by one layer
+            int side = q[0].size() <= q[1].size() ? 0 : 1;
+            int other = 1 - side;
+            long[] mine = visited[side], theirs = visited[other];
+            long[] lo = parentLo[side], hi = parentHi[side];
+            IntQueue wave = q[side];
+
+            depth[side]++;
+            for (int n = wave.size(); n > 0; n--)
+            {
+                int cell = wave.poll();
+                expanded++;
+
+                for (int k = 0; k < 4; k++)
+                {
+                    int next = cell + offset[k];
+                    int w = next >>> 6;
+                    long bit = 1L << next;
+
+                    if ((open[w] & ~mine[w] & bit) == 0)
+                        continue;
+
+                    if ((theirs[w] & bit) != 0) {
+                        // the waves meet between cell and next
+                        int from = side == 0 ? cell : next;
+                        int to = side == 0 ? next : cell;
+                        int fromDepth = side == 0 ? depth[0] - 1 : depth[0];
+                        int toDepth = side == 0 ? depth[1] : depth[1] - 1;
+
+                        int[] cells = new int[fromDepth + toDepth + 2];
+                        GridSearch.trace(maze, parentLo[0], parentHi[0], offset, from, fromDepth, cells, fromDepth, -1);
+                        GridSearch.trace(maze, parentLo[1], parentHi[1], offset, to, toDepth, cells, fromDepth + 1, 1);
+
+                        Route route = new Route(cells.length - 1, cells);
+                        route.expanded = expanded;
+                        return route;
+                    }
+
+                    mine[w] |= bit;
+                    if ((k & 1) != 0) lo[w] |= bit;
+                    if ((k & 2) != 0) hi[w] |= bit;
+                    wave.add(next);
+                }
+            }
+        }
+
+        return null;
+    }
+}
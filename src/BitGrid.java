@@ -0,0 +1,181 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+/**
+ * A maze packed one bit per cell.  One bit plane records which cells are open
+ * (passable) and a second plane of the same shape records which cells a search
+ * has visited, so a 15k x 15k maze needs about 56 MB instead of the gigabytes
+ * taken by an int[][] maze plus a boolean[][] visited matrix.
+ * <p>
+ * Every row is padded to a whole number of 64 bit words with at least one spare
+ * (closed) bit, and a closed padding row sits above and below the maze.  A cell
+ * is addressed by its bit index (y + 1) * stride + x, so the four neighbours of
+ * any cell are simply index - stride, index - 1, index + 1 and index + stride,
+ * and stepping off the edge of the maze always lands on a closed padding cell.
+ * The searches never need to bounds check a neighbour.
+ */
+class BitGrid
+{
+    final int width, height;
+
+    // bits per row, a multiple of 64 that is larger than width
+    final int stride;
+
+    // the open and visited bit planes, including the padding rows
+    final long[] open;
+    final long[] visited;
+
+    BitGrid(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("maze dimensions must be positive");
+        if ((long) ((width >>> 6) + 1) * 64 * (height + 2) > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("maze is too large for a BitGrid: " + width + "x" + height);
+
+        this.width = width;
+        this.height = height;
+        this.stride = ((width >>> 6) + 1) << 6;
+        this.open = new long[(stride >>> 6) * (height + 2)];
+        this.visited = new long[open.length];
+    }
+
+    // Builds a grid from a matrix where 1 marks an open cell (the format used by Main)
+    static BitGrid fromMatrix(int[][] mat) {
+        BitGrid grid = new BitGrid(mat[0].length, mat.length);
+        for (int y = 0; y < grid.height; y++)
+            for (int x = 0; x < grid.width; x++)
+                if (mat[y][x] == 1)
+                    grid.setOpen(x, y, true);
+        return grid;
+    }
+
+    // Builds a grid from an image, a cell is open when the sample in band is 255 (white).
+    // The image is read one row at a time so no full size pixel array is created.
+    static BitGrid fromImage(BufferedImage image, int band) {
+        BitGrid grid = new BitGrid(image.getWidth(), image.getHeight());
+        Raster raster = image.getRaster();
+        int[] samples = new int[grid.width];
+        for (int y = 0; y < grid.height; y++) {
+            raster.getSamples(0, y, grid.width, 1, band, samples);
+            for (int x = 0; x < grid.width; x++)
+                if (samples[x] == 255)
+                    grid.setOpen(x, y, true);
+        }
+        return grid;
+    }
+
+    // Returns a [height][width] matrix with 255 for open cells and 0 for walls
+    int[][] toPixels() {
+        int[][] pixels = new int[height][width];
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                if (isOpen(index(x, y)))
+                    pixels[y][x] = 255;
+        return pixels;
+    }
+
+    // bit index of cell (x, y)
+    int index(int x, int y) {
+        return (y + 1) * stride + x;
+    }
+
+    int x(int index) {
+        return index % stride;
+    }
+
+    int y(int index) {
+        return index / stride - 1;
+    }
+
+    // row-major cell number (y * width + x) of a bit index, as used by Route
+    int cell(int index) {
+        return y(index) * width + x(index);
+    }
+
+    // bit index of a row-major cell number
+    int indexOf(int cell) {
+        return index(cell % width, cell / width);
+    }
+
+    boolean isOpen(int index) {
+        return (open[index >>> 6] & (1L << index)) != 0;
+    }
+
+    boolean isOpen(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height && isOpen(index(x, y));
+    }
+
+    void setOpen(int x, int y, boolean value) {
+        int index = index(x, y);
+        if (value)
+            open[index >>> 6] |= 1L << index;
+        else
+            open[index >>> 6] &= ~(1L << index);
+    }
+
+    boolean isVisited(int index) {
+        return (visited[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Marks a cell visited, returns false if it already was
+    boolean visit(int index) {
+        long bit = 1L << index;
+        long word = visited[index >>> 6];
+        if ((word & bit) != 0)
+            return false;
+        visited[index >>> 6] = word | bit;
+        return true;
+    }
+
+    void clearVisited() {
+        Arrays.fill(visited, 0L);
+    }
+
+    // The openings in the border of the maze, as the bit index of the middle cell of
+    // each run of open border cells.  The border is walked along the top row, down the
+    // left and right columns and along the bottom row, so an entrance at the top or
+    // left comes before an exit at the bottom or right.  Only the border is read.
+    int[] openings()
+    {
+        IntQueue found = new IntQueue(16);
+        openings(found, 0, 0, 1, 0, width);
+        openings(found, 0, 1, 0, 1, height - 2);
+        if (width > 1)
+            openings(found, width - 1, 1, 0, 1, height - 2);
+        if (height > 1)
+            openings(found, 0, height - 1, 1, 0, width);
+
+        int[] cells = new int[found.size()];
+        for (int k = 0; k < cells.length; k++)
+            cells[k] = found.poll();
+        return cells;
+    }
+
+    // Adds the middle of each run of open cells among the n cells from (x, y) in steps of (dx, dy)
+    private void openings(IntQueue found, int x, int y, int dx, int dy, int n)
+    {
+        int run = 0;
+        for (int k = 0; k <= n; k++, x += dx, y += dy) {
+            if (k < n && isOpen(index(x, y))) {
+                run++;
+            } else if (run > 0) {
+                int middle = run / 2 + 1;
+                found.add(index(x - middle * dx, y - middle * dy));
+                run = 0;
+            }
+        }
+    }
+
+    // number of open cells in the maze
+    long countOpen() {
+        long count = 0;
+        for (long word : open)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    // heap used by the two bit planes
+    long sizeInBytes() {
+        return 16L * open.length;
+    }
+}
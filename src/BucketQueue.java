@@ -0,0 +1,70 @@
+import java.util.Arrays;
+
+/**
+ * A monotone priority queue of primitive ints with small integer keys.
+ * <p>
+ * Values are kept in one bucket per key, and the buckets are used as a ring:
+ * every key waiting in the queue must lie within span of the smallest one, and
+ * a key added must not be smaller than the key most recently polled.  Both hold
+ * for A* with a consistent heuristic and for Dijkstra with bounded edge costs,
+ * where the keys only ever grow.  Adding and polling are then constant time,
+ * and nothing is allocated once the buckets have grown to their working size.
+ * Values with the same key come out last in, first out.
+ */
+class BucketQueue
+{
+    private final int[][] buckets;
+    private final int[] sizes;
+    private final int span;
+
+    private int minKey;
+    private int count;
+
+    BucketQueue(int span) {
+        this.span = span;
+        this.buckets = new int[span][16];
+        this.sizes = new int[span];
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    int size() {
+        return count;
+    }
+
+    void clear() {
+        Arrays.fill(sizes, 0);
+        count = 0;
+    }
+
+    void add(int value, int key) {
+        // an empty queue can restart anywhere, otherwise keys are counted from the last one polled
+        if (count == 0 && (key < minKey || key - minKey >= span))
+            minKey = key;
+        else if (key < minKey || key - minKey >= span)
+            throw new IllegalArgumentException("key " + key + " outside [" + minKey + ", " + (minKey + span) + ")");
+
+        int b = key % span;
+        int[] bucket = buckets[b];
+        if (sizes[b] == bucket.length)
+            buckets[b] = bucket = Arrays.copyOf(bucket, bucket.length << 1);
+        bucket[sizes[b]++] = value;
+        count++;
+    }
+
+    // the smallest key in the queue, which must not be empty
+    int minKey() {
+        while (sizes[minKey % span] == 0)
+            minKey++;
+        return minKey;
+    }
+
+    // removes and returns a value with the smallest key
+    int poll() {
+        int b = minKey() % span;
+        count--;
+        return buckets[b][--sizes[b]];
+    }
+}
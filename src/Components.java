@@ -0,0 +1,187 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The connected components of a maze, labelled once so that whether one cell can
+ * be reached from another is a comparison of two labels.
+ * <p>
+ * Without them a search only finds out that the target can't be reached after
+ * flooding everything the source can reach, which for a source in the main part of
+ * a large maze is most of it.  The labels are a union-find forest over the row-major
+ * cells: every open cell is joined with its open neighbours to the left and above,
+ * and a set is always named by its smallest cell, so the labels come out the same
+ * however the joins were ordered.  Walls are labelled -1.
+ * <p>
+ * The rows are cut into bands that are labelled in parallel on a ForkJoinPool, each
+ * band only joining cells within itself so the bands never touch each other's
+ * labels.  The bands are then merged along the boundary rows on the calling thread,
+ * and finally every cell is pointed straight at its root, in parallel again.
+ * <p>
+ * The labels take an int a cell and describe the maze as it was when they were
+ * made; label it again after changing it.
+ */
+class Components
+{
+    // the fewest rows a band has
+    private static final int BAND = 64;
+
+    final int width, height;
+
+    // the smallest cell of the component of each cell, or -1 for a wall
+    private final int[] label;
+
+    private Components(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.label = new int[width * height];
+    }
+
+    // Labels the components of a maze on the common pool
+    static Components label(BitGrid maze)
+    {
+        return label(maze, ForkJoinPool.commonPool());
+    }
+
+    // Labels the components of a maze using the threads of pool
+    static Components label(BitGrid maze, ForkJoinPool pool)
+    {
+        if ((long) maze.width * maze.height > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("maze is too large to label: " + maze.width + "x" + maze.height);
+
+        Components components = new Components(maze.width, maze.height);
+
+        // about four bands per thread to even out the load
+        int rows = Math.max(BAND, -Math.floorDiv(-maze.height, 4 * pool.getParallelism()));
+        int bands = (maze.height + rows - 1) / rows;
+        pool.invoke(new Band(components, maze, rows, 0, bands, false));
+
+        // join the bands across their boundaries
+        for (int y = rows; y < maze.height; y += rows)
+            for (int x = 0; x < maze.width; x++)
+                if (maze.isOpen(maze.index(x, y)) && maze.isOpen(maze.index(x, y - 1)))
+                    components.union(y * maze.width + x, (y - 1) * maze.width + x);
+
+        pool.invoke(new Band(components, maze, rows, 0, bands, true));
+        return components;
+    }
+
+    // the root of a cell's set, halving the path to it on the way
+    private int find(int cell)
+    {
+        int[] label = this.label;
+        while (label[cell] != cell) {
+            label[cell] = label[label[cell]];
+            cell = label[cell];
+        }
+        return cell;
+    }
+
+    // joins the sets of two cells under the smaller root
+    private void union(int a, int b)
+    {
+        int ra = find(a), rb = find(b);
+        if (ra < rb)
+            label[rb] = ra;
+        else if (rb < ra)
+            label[ra] = rb;
+    }
+
+    // Labels rows [from * rows, to * rows) a band at a time, splitting the bands in
+    // halves into tasks.  The first pass joins the cells of each band, the second
+    // (flatten) points every cell at its root once the bands have been merged.
+    private static class Band extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Components components;
+        private final BitGrid maze;
+        private final int rows, from, to;
+        private final boolean flatten;
+
+        Band(Components components, BitGrid maze, int rows, int from, int to, boolean flatten) {
+            this.components = components;
+            this.maze = maze;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.flatten = flatten;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Band(components, maze, rows, from, mid, flatten),
+                          new Band(components, maze, rows, mid, to, flatten));
+                return;
+            }
+
+            int top = from * rows;
+            int bottom = Math.min(top + rows, maze.height);
+            int width = maze.width;
+            int[] label = components.label;
+
+            if (flatten) {
+                // roots may be in other bands, which are only read; a cell read while
+                // another task overwrites it still leads to the same root
+                for (int cell = top * width; cell < bottom * width; cell++) {
+                    int root = label[cell];
+                    if (root < 0)
+                        continue;
+                    while (label[root] != root)
+                        root = label[root];
+                    label[cell] = root;
+                }
+                return;
+            }
+
+            for (int y = top; y < bottom; y++)
+            {
+                for (int x = 0, cell = y * width; x < width; x++, cell++)
+                {
+                    int index = maze.index(x, y);
+                    if (!maze.isOpen(index)) {
+                        label[cell] = -1;
+                        continue;
+                    }
+
+                    // along a run of open cells every cell takes the label of the one
+                    // before, which is its root or close to it
+                    label[cell] = maze.isOpen(index - 1) ? label[cell - 1] : cell;
+                    if (y > top && maze.isOpen(index - maze.stride))
+                        components.union(cell, cell - width);
+                }
+            }
+        }
+    }
+
+    // The component of (x, y), the smallest cell of it in row-major order, or -1 for a wall.
+    // A cell outside the maze is refused rather than read from the next row.
+    int id(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            throw new IllegalArgumentException("cell (" + x + ", " + y + ") is outside the maze");
+        return label[y * width + x];
+    }
+
+    // Whether (tx, ty) can be reached from (sx, sy); a cell can always reach itself
+    boolean connected(int sx, int sy, int tx, int ty) {
+        int source = id(sx, sy);
+        int target = id(tx, ty);
+        return sx == tx && sy == ty || source >= 0 && source == target;
+    }
+
+    // number of components
+    int count() {
+        int count = 0;
+        for (int cell = 0; cell < label.length; cell++)
+            if (label[cell] == cell)
+                count++;
+        return count;
+    }
+
+    // heap used by the labels
+    long sizeInBytes() {
+        return 4L * label.length;
+    }
+}
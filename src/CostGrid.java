@@ -0,0 +1,180 @@
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * A maze whose cells have a cost of entering them, one unsigned byte a cell, taken
+ * from the gray levels of the image instead of only telling white from the rest.
+ * <p>
+ * Cells darker than a threshold are walls.  The others cost 256 - gray, so white
+ * costs 1 and a black and white maze is the same maze Lee's algorithm solves, with
+ * lighter cells cheaper to cross than darker ones.  In two-level mode white cells
+ * cost 0 and every other open cell 1, which CostSearch solves with a 0-1 BFS.
+ * <p>
+ * The layout mirrors BitGrid: a wall row above and below the maze and a wall column
+ * after every row, which is also the one before the next row, so a cell is at
+ * (y + 1) * stride + x and the neighbours of any cell are index - stride, index - 1,
+ * index + 1 and index + stride without bounds checks.
+ */
+class CostGrid
+{
+    // the cost of a wall, never entered
+    static final int WALL = 255;
+
+    // the darkest gray that is still open by default
+    static final int DEFAULT_THRESHOLD = 128;
+
+    // rows decoded at a time by read, as in PngMazeReader
+    private static final int STRIP = 256;
+
+    final int width, height;
+
+    // cells per row, including the wall column
+    final int stride;
+
+    // the cost of every cell, unsigned, including the padding
+    final byte[] cost;
+
+    // the largest cost of an open cell
+    int maxCost;
+
+    CostGrid(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("maze dimensions must be positive");
+        if ((long) (width + 1) * (height + 2) > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("maze is too large for a CostGrid: " + width + "x" + height);
+
+        this.width = width;
+        this.height = height;
+        this.stride = width + 1;
+        this.cost = new byte[stride * (height + 2)];
+        Arrays.fill(cost, (byte) WALL);
+    }
+
+    // The cost of entering a cell of the given gray level, or WALL
+    static int cost(int gray, int threshold, boolean twoLevel) {
+        if (gray < threshold)
+            return WALL;
+        if (twoLevel)
+            return gray == 255 ? 0 : 1;
+        return 256 - gray;
+    }
+
+    // Builds a grid from a matrix of gray levels, as EasyBufferedImage.getPixels2D returns them
+    static CostGrid fromPixels(int[][] gray, int threshold, boolean twoLevel) {
+        checkThreshold(threshold);
+        CostGrid grid = new CostGrid(gray[0].length, gray.length);
+        for (int y = 0; y < grid.height; y++)
+            for (int x = 0; x < grid.width; x++)
+                grid.setCost(x, y, cost(gray[y][x], threshold, twoLevel));
+        return grid;
+    }
+
+    // Builds a grid from an image, taking the gray level from the green component of the
+    // sRGB colour as Main.readMaze does, whatever the image type
+    static CostGrid fromImage(BufferedImage image, int threshold, boolean twoLevel) {
+        checkThreshold(threshold);
+        CostGrid grid = new CostGrid(image.getWidth(), image.getHeight());
+        grid.setRows(image, 0, threshold, twoLevel);
+        return grid;
+    }
+
+    // Reads a maze image into a grid in strips of STRIP rows, so only one strip of the
+    // image is decoded at a time and the grid's byte a cell is the only full size copy
+    static CostGrid read(File file, int threshold, boolean twoLevel) throws IOException {
+        checkThreshold(threshold);
+        try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext())
+                throw new IOException("unsupported image format: " + file.getName());
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                CostGrid grid = new CostGrid(width, height);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                for (int top = 0; top < height; top += STRIP) {
+                    param.setSourceRegion(new Rectangle(0, top, width, Math.min(STRIP, height - top)));
+                    grid.setRows(reader.read(0, param), top, threshold, twoLevel);
+                }
+                return grid;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Sets the costs of the rows from top on from the rows of image, one row at a time
+    private void setRows(BufferedImage image, int top, int threshold, boolean twoLevel) {
+        int[] rgb = new int[width];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, rgb, 0, width);
+            for (int x = 0; x < width; x++)
+                setCost(x, top + y, cost((rgb[x] >> 8) & 0xFF, threshold, twoLevel));
+        }
+    }
+
+    // a threshold of 0 or 1 would make gray 1 cost 255, the same as a wall
+    private static void checkThreshold(int threshold) {
+        if (threshold < 2 || threshold > 255)
+            throw new IllegalArgumentException("threshold must be between 2 and 255: " + threshold);
+    }
+
+    // index of cell (x, y)
+    int index(int x, int y) {
+        return (y + 1) * stride + x;
+    }
+
+    int x(int index) {
+        return index % stride;
+    }
+
+    int y(int index) {
+        return index / stride - 1;
+    }
+
+    // row-major cell number (y * width + x) of an index, as used by Route
+    int cell(int index) {
+        return y(index) * width + x(index);
+    }
+
+    int cost(int index) {
+        return cost[index] & 0xFF;
+    }
+
+    boolean isOpen(int index) {
+        return cost[index] != (byte) WALL;
+    }
+
+    boolean isOpen(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height && isOpen(index(x, y));
+    }
+
+    void setCost(int x, int y, int value) {
+        if (value < 0 || value > WALL)
+            throw new IllegalArgumentException("cost must be between 0 and " + WALL + ": " + value);
+        cost[index(x, y)] = (byte) value;
+        if (value != WALL)
+            maxCost = Math.max(maxCost, value);
+    }
+
+    // The open cells as a BitGrid, for SolutionWriter
+    BitGrid toBitGrid() {
+        BitGrid grid = new BitGrid(width, height);
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                if (isOpen(index(x, y)))
+                    grid.setOpen(x, y, true);
+        return grid;
+    }
+}
@@ -0,0 +1,222 @@
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Cheapest routes on a CostGrid, where entering a cell costs its cost and a route
+ * costs the sum over the cells it enters (not the one it starts from).
+ * <p>
+ * The costs are small integers, so instead of a heap Dijkstra's open list is Dial's
+ * bucket queue: a BucketQueue with a bucket for each of the maxCost + 1 distances
+ * that can be waiting at once, which makes adding and polling constant time and
+ * allocates nothing once the buckets have grown.  A cell is queued every time its
+ * distance improves and stale entries are skipped when polled (their key is no
+ * longer the cell's distance), so no decrease-key is needed.
+ * <p>
+ * When every open cell costs 0 or 1 the search is a 0-1 BFS.  It is usually written
+ * with a deque, cells reached at no cost going in front; here the front is a queue
+ * of its own, holding the cells of the current distance, and the cells one further
+ * go in a second queue that becomes the current one when the first runs dry.  Both
+ * are IntQueues, so this too allocates nothing while searching.
+ * <p>
+ * The distances and the parent directions, a byte each, are kept in arrays laid out
+ * like the grid.  A Route's length is its number of steps and its cost the sum above.
+ */
+class CostSearch
+{
+    // Find the cheapest route from (sx, sy) to (tx, ty), by 0-1 BFS if every cell costs
+    // 0 or 1 and by Dial's algorithm otherwise.  Route cells are row-major (y * width + x).
+    // Returns null if the destination can't be reached.
+    static Route solve(CostGrid maze, int sx, int sy, int tx, int ty)
+    {
+        return maze.maxCost <= 1 ? zeroOne(maze, sx, sy, tx, ty) : dial(maze, sx, sy, tx, ty);
+    }
+
+    // Dijkstra with a bucket queue of maxCost + 1 buckets
+    static Route dial(CostGrid maze, int sx, int sy, int tx, int ty)
+    {
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+        if (source != target && !maze.isOpen(target))
+            return null;
+
+        byte[] cost = maze.cost;
+        int[] offset = { -maze.stride, -1, 1, maze.stride };
+        int[] dist = new int[cost.length];
+        byte[] parent = new byte[cost.length];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+
+        BucketQueue q = new BucketQueue(maze.maxCost + 1);
+        dist[source] = 0;
+        q.add(source, 0);
+
+        int expanded = 0, enqueued = 1, peakQueue = 1;
+
+        while (!q.isEmpty())
+        {
+            int d = q.minKey();
+            int cell = q.poll();
+            if (d != dist[cell])
+                continue;
+            expanded++;
+
+            if (cell == target)
+                return backtrace(maze, parent, offset, source, target, d, expanded, enqueued, peakQueue);
+
+            for (int k = 0; k < 4; k++)
+            {
+                int next = cell + offset[k];
+                int c = cost[next] & 0xFF;
+                if (c == CostGrid.WALL)
+                    continue;
+
+                int nd = d + c;
+                if (nd < 0)
+                    throw new IllegalStateException("route cost overflows an int");
+                if (nd < dist[next]) {
+                    dist[next] = nd;
+                    parent[next] = (byte) k;
+                    q.add(next, nd);
+                    enqueued++;
+                }
+            }
+            peakQueue = Math.max(peakQueue, q.size());
+        }
+
+        return null;
+    }
+
+    // 0-1 BFS for grids whose open cells all cost 0 or 1
+    static Route zeroOne(CostGrid maze, int sx, int sy, int tx, int ty)
+    {
+        if (maze.maxCost > 1)
+            throw new IllegalArgumentException("0-1 BFS needs costs of 0 and 1, the maze has " + maze.maxCost);
+
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+        if (source != target && !maze.isOpen(target))
+            return null;
+
+        byte[] cost = maze.cost;
+        int[] offset = { -maze.stride, -1, 1, maze.stride };
+        int[] dist = new int[cost.length];
+        byte[] parent = new byte[cost.length];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+
+        // the cells at distance d, and those at d + 1
+        IntQueue here = new IntQueue(maze.width + maze.height);
+        IntQueue further = new IntQueue(maze.width + maze.height);
+        dist[source] = 0;
+        here.add(source);
+
+        int d = 0;
+        int expanded = 0, enqueued = 1, peakQueue = 1;
+
+        while (!here.isEmpty())
+        {
+            while (!here.isEmpty())
+            {
+                int cell = here.poll();
+                if (dist[cell] != d)
+                    continue;
+                expanded++;
+
+                if (cell == target)
+                    return backtrace(maze, parent, offset, source, target, d, expanded, enqueued, peakQueue);
+
+                for (int k = 0; k < 4; k++)
+                {
+                    int next = cell + offset[k];
+                    int c = cost[next] & 0xFF;
+                    if (c == CostGrid.WALL || d + c >= dist[next])
+                        continue;
+
+                    dist[next] = d + c;
+                    parent[next] = (byte) k;
+                    (c == 0 ? here : further).add(next);
+                    enqueued++;
+                }
+                peakQueue = Math.max(peakQueue, here.size() + further.size());
+            }
+
+            IntQueue swap = here;
+            here = further;
+            further = swap;
+            d++;
+        }
+
+        return null;
+    }
+
+    // Dijkstra with java.util.PriorityQueue, a binary heap of boxed entries.  Only kept
+    // to compare dial and zeroOne against (see Benchmark), like Main's map of strings.
+    static Route heap(CostGrid maze, int sx, int sy, int tx, int ty)
+    {
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+        if (source != target && !maze.isOpen(target))
+            return null;
+
+        int[] offset = { -maze.stride, -1, 1, maze.stride };
+        int[] dist = new int[maze.cost.length];
+        byte[] parent = new byte[maze.cost.length];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+
+        // entries are (distance << 32 | cell)
+        PriorityQueue<Long> q = new PriorityQueue<>();
+        dist[source] = 0;
+        q.add((long) source);
+
+        int expanded = 0;
+        while (!q.isEmpty())
+        {
+            long entry = q.poll();
+            int d = (int) (entry >>> 32);
+            int cell = (int) entry;
+            if (d != dist[cell])
+                continue;
+            expanded++;
+
+            if (cell == target)
+                return backtrace(maze, parent, offset, source, target, d, expanded, 0, 0);
+
+            for (int k = 0; k < 4; k++)
+            {
+                int next = cell + offset[k];
+                if (!maze.isOpen(next))
+                    continue;
+                int nd = d + maze.cost(next);
+                if (nd < dist[next]) {
+                    dist[next] = nd;
+                    parent[next] = (byte) k;
+                    q.add((long) nd << 32 | next);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    // Walks the parent directions from target back to source, counting the steps first
+    private static Route backtrace(CostGrid maze, byte[] parent, int[] offset, int source, int target,
+                                   int cost, int expanded, int enqueued, int peakQueue)
+    {
+        int length = 0;
+        for (int cell = target; cell != source; cell -= offset[parent[cell]])
+            length++;
+
+        int[] cells = new int[length + 1];
+        int cell = target;
+        for (int step = length; step > 0; step--) {
+            cells[step] = maze.cell(cell);
+            cell -= offset[parent[cell]];
+        }
+        cells[0] = maze.cell(source);
+
+        Route route = new Route(length, cells);
+        route.cost = cost;
+        route.expanded = expanded;
+        route.enqueued = enqueued;
+        route.peakQueue = peakQueue;
+        return route;
+    }
+}
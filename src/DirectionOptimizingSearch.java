@@ -0,0 +1,197 @@
+/**
+ * Lee's wave expansion that switches between top-down and bottom-up steps.
+ * <p>
+ * A top-down step is the usual one: every cell of the wave looks at its four
+ * neighbours, most of which are walls or already visited once the wave runs along
+ * a row.  A bottom-up step turns it around and lets the unvisited open cells look
+ * for a neighbour on the wave, which on the packed grid takes a handful of word
+ * operations for 64 cells at a time:
+ * <pre>
+ *     next = open &amp; ~visited &amp; (wave &lt;&lt; 1 | wave &gt;&gt;&gt; 1 | wave above | wave below)
+ * </pre>
+ * with the bits carried over between the words of a row.  While going bottom-up
+ * the wave is a bit plane together with the list of its non-zero words, and only
+ * the words around those are looked at, so a step costs about five words per
+ * word of the wave instead of four lookups per cell.  The parent directions of the
+ * new cells come from the same four shifted planes.
+ * <p>
+ * That only pays when the wave is dense, with several cells in each of its words,
+ * as it is when it sweeps along open rows or down a comb of parallel corridors.
+ * The search goes bottom-up when the wave has more than DENSE cells per word and
+ * back to a queue when it thins out again.  In the corridors of the example mazes
+ * the wave is never that dense, and the search stays top-down like GridSearch.
+ */
+class DirectionOptimizingSearch
+{
+    // go bottom-up when the wave has more than this many cells per word
+    private static final int DENSE = 4;
+
+    // Find the shortest route from (sx, sy) to (tx, ty).  Route cells are row-major
+    // (y * width + x).  Returns null if the destination can't be reached.
+    static Route solve(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+
+        long[] open = maze.open;
+        long[] visited = maze.visited;
+        maze.clearVisited();
+
+        long[] parentLo = new long[open.length];
+        long[] parentHi = new long[open.length];
+
+        int words = maze.stride >>> 6;
+        int[] offset = { -maze.stride, -1, 1, maze.stride };
+
+        IntQueue q = new IntQueue(maze.width + maze.height);
+
+        // while going bottom-up, the wave and the next one as bit planes with their
+        // non-zero words
+        long[] wave = null, next = null;
+        IntQueue waveWords = null, nextWords = null;
+
+        maze.visit(source);
+        q.add(source);
+
+        // the number of cells on the wave and (an upper bound of) the words they are in
+        int size = 1, used = 1;
+        int dist = 0;
+        int expanded = 0;
+        boolean bottomUp = false;
+        boolean found = source == target;
+
+        while (!found && size > 0)
+        {
+            dist++;
+            expanded += size;
+
+            boolean dense = size > DENSE * used;
+            if (dense && !bottomUp) {
+                // queue to bit plane
+                if (wave == null) {
+                    wave = new long[open.length];
+                    next = new long[open.length];
+                    waveWords = new IntQueue(64);
+                    nextWords = new IntQueue(64);
+                }
+                while (!q.isEmpty()) {
+                    int cell = q.poll();
+                    int w = cell >>> 6;
+                    if (wave[w] == 0)
+                        waveWords.add(w);
+                    wave[w] |= 1L << cell;
+                }
+                bottomUp = true;
+            } else if (!dense && bottomUp) {
+                // bit plane to queue
+                while (!waveWords.isEmpty()) {
+                    int w = waveWords.poll();
+                    for (long bits = wave[w]; bits != 0; bits &= bits - 1)
+                        q.add((w << 6) + Long.numberOfTrailingZeros(bits));
+                    wave[w] = 0;
+                }
+                bottomUp = false;
+            }
+
+            if (!bottomUp)
+            {
+                // top-down, as in GridSearch, counting the runs of cells added to the
+                // same word as an estimate of the words on the next wave
+                used = 0;
+                int last = -1;
+                for (int n = q.size(); n > 0 && !found; n--)
+                {
+                    int cell = q.poll();
+                    for (int k = 0; k < 4; k++)
+                    {
+                        int c = cell + offset[k];
+                        int w = c >>> 6;
+                        long bit = 1L << c;
+                        if ((open[w] & ~visited[w] & bit) == 0)
+                            continue;
+
+                        visited[w] |= bit;
+                        if ((k & 1) != 0) parentLo[w] |= bit;
+                        if ((k & 2) != 0) parentHi[w] |= bit;
+
+                        if (c == target) {
+                            found = true;
+                            break;
+                        }
+                        q.add(c);
+                        if (w != last) {
+                            used++;
+                            last = w;
+                        }
+                    }
+                }
+                size = q.size();
+            }
+            else
+            {
+                // bottom-up over the words of the wave and the words next to them
+                size = 0;
+                for (int n = waveWords.size(); n > 0; n--)
+                {
+                    int a = waveWords.poll();
+                    waveWords.add(a);
+                    for (int d = 0; d < 5; d++)
+                    {
+                        int w = a + (d == 0 ? -words : d == 1 ? -1 : d == 2 ? 0 : d == 3 ? 1 : words);
+
+                        // the padding is never open, so the neighbours below are in range
+                        long free = open[w] & ~visited[w];
+                        if (free == 0)
+                            continue;
+
+                        // the wave cell above, to the left, to the right and below each bit;
+                        // the carries across the ends of a row only ever hit padding
+                        long above = wave[w - words];
+                        long left = wave[w] << 1 | wave[w - 1] >>> 63;
+                        long right = wave[w] >>> 1 | wave[w + 1] << 63;
+                        long below = wave[w + words];
+
+                        long reached = free & (above | left | right | below);
+                        if (reached == 0)
+                            continue;
+
+                        // moved down from above (k = 3), right from the left (2),
+                        // left from the right (1) or up from below (0)
+                        long down = reached & above;
+                        long rightward = reached & left & ~down;
+                        long leftward = reached & right & ~down & ~rightward;
+                        parentLo[w] |= down | leftward;
+                        parentHi[w] |= down | rightward;
+
+                        visited[w] |= reached;
+                        if (next[w] == 0)
+                            nextWords.add(w);
+                        next[w] |= reached;
+                        size += Long.bitCount(reached);
+                    }
+                }
+
+                // clear the old wave, it becomes the buffer for the one after next
+                while (!waveWords.isEmpty())
+                    wave[waveWords.poll()] = 0;
+
+                long[] swap = wave;
+                wave = next;
+                next = swap;
+                IntQueue swapWords = waveWords;
+                waveWords = nextWords;
+                nextWords = swapWords;
+
+                used = waveWords.size();
+                found = (wave[target >>> 6] & (1L << target)) != 0;
+            }
+        }
+
+        if (!found)
+            return null;
+
+        Route route = GridSearch.backtrace(maze, parentLo, parentHi, offset, target, dist);
+        route.expanded = expanded;
+        return route;
+    }
+}
@@ -0,0 +1,424 @@
+import java.util.Arrays;
+
+/**
+ * The shortest route between two fixed cells of a maze that keeps changing, repaired
+ * after every change instead of searched for again (Lifelong Planning A*, Koenig and
+ * Likhachev, 2001).
+ * <p>
+ * Every cell keeps its distance from the source, g, and a one step lookahead of it,
+ * rhs: 0 for the source, one more than the smallest g of its neighbours for an open
+ * cell and infinite for a wall.  A cell whose g and rhs agree is consistent, and h
+ * is the Manhattan distance to the target.  Opening or closing a cell only changes
+ * the rhs of that cell (entering it is what costs), so an edit makes that one cell
+ * inconsistent and queues it.  The next query then settles the inconsistent cells
+ * in order of (min(g, rhs) + h, min(g, rhs)), lowering g where a shorter way has
+ * appeared and raising it to infinity (to be lowered again) where the way it relied
+ * on has gone, and stops as soon as the target is consistent and nothing queued
+ * could still improve it.  Only the cells whose distance changed, and which could
+ * lie on a shortest route, are touched.
+ * <p>
+ * The queue is a binary heap of (key, cell) pairs with no decrease-key: a cell is
+ * pushed again whenever its key changes and the entries that no longer match their
+ * cell are dropped when they reach the top, or swept out when the heap would grow.
+ * The route is read back from the target by stepping to a neighbour one closer to
+ * the source.  g and rhs take an int each for every bit of the grid, padding too.
+ * <p>
+ * Settling a cell costs six or seven times what a wave expansion spends on it (250
+ * to 300 ns against about 40 on perfect4k and braid2k), and a cut or a shortcut of
+ * the route in a perfect maze changes the distance of everything beyond it.  So a
+ * query floods the distances from the source instead: the first one, the one after
+ * an edit that closes a cell of the last route, opens a cell beside it more than two
+ * steps nearer the source than its route neighbour, or opens onto an unreachable
+ * part of the maze while the target is unreachable, and one that has settled a
+ * sixteenth of the cells the last flood reached without finishing.  The flood stops
+ * at the target's wave, as GridSearch does, and queues that wave with infinite g, so
+ * it costs about a GridSearch plus a pass to fill and copy g, and a query that gives
+ * up has spent less than half of that settling first.  With four edits at a time
+ * (Benchmark dynamic, two runs), edits within three cells of the route repair in
+ * about the time of searching again, a median of 200 to 226 ms against 209 to 215
+ * for GridSearch on perfect4k and 78 ms against 64 to 79 on braid2k, where most of
+ * them shortcut it, while edits anywhere repair in 1.8 and 0.4 ms.  The longest
+ * query took up to twice a GridSearch.
+ * <p>
+ * The maze is edited through the search (setOpen, toggle) so that it can follow.  A
+ * route is the same length as GridSearch finds in the maze as it is then; a wall as
+ * the source is left as it is, as GridSearch does.  Searching doesn't use the maze's
+ * visited plane, but a DynamicSearch is not thread safe.
+ */
+class DynamicSearch
+{
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    final BitGrid maze;
+    final int sx, sy, tx, ty;
+
+    private final int source, target;
+    private final int[] offset;
+    private final int[] g, rhs;
+
+    // the most cells a query settles before flooding instead, a sixteenth of the cells the
+    // last flood reached
+    private int budget;
+
+    // the cells of the last route found, as bits laid out like the grid, and their indices
+    private final long[] onRoute;
+    private int[] routeIndices = new int[0];
+
+    // whether the target was unreachable at the last query
+    private boolean unreachable;
+
+    // whether the next query floods at once instead of repairing the distances: before the
+    // first one and after an edit that cuts or shortcuts the last route
+    private boolean stale = true;
+
+    // the heap of inconsistent cells, keys are (k1 << 32 | k2) and cells[i] goes with keys[i]
+    private long[] keys = new long[1024];
+    private int[] cells = new int[1024];
+    private int heapSize;
+
+    // entries pushed since the last query and the largest the heap has been since
+    private int pushed, peak;
+
+    DynamicSearch(BitGrid maze, int sx, int sy, int tx, int ty) {
+        if (sx < 0 || sx >= maze.width || sy < 0 || sy >= maze.height
+                || tx < 0 || tx >= maze.width || ty < 0 || ty >= maze.height)
+            throw new IllegalArgumentException("endpoints outside the maze");
+
+        this.maze = maze;
+        this.sx = sx;
+        this.sy = sy;
+        this.tx = tx;
+        this.ty = ty;
+        this.source = maze.index(sx, sy);
+        this.target = maze.index(tx, ty);
+        this.offset = new int[] { -maze.stride, -1, 1, maze.stride };
+
+        this.g = new int[maze.open.length << 6];
+        this.rhs = new int[g.length];
+        Arrays.fill(g, INFINITE);
+        Arrays.fill(rhs, INFINITE);
+        this.onRoute = new long[maze.open.length];
+    }
+
+    // Opens or closes cell (x, y) of the maze; the route is repaired by the next call to route.
+    // A cell outside the maze is refused, as opening it would open a padding bit.
+    void setOpen(int x, int y, boolean value)
+    {
+        if (x < 0 || x >= maze.width || y < 0 || y >= maze.height)
+            throw new IllegalArgumentException("cell (" + x + ", " + y + ") is outside the maze");
+        int cell = maze.index(x, y);
+        if (maze.isOpen(cell) == value)
+            return;
+        if (value ? joins(cell) : (onRoute[cell >>> 6] & (1L << cell)) != 0)
+            stale = true;
+        maze.setOpen(x, y, value);
+        update(cell);
+    }
+
+    // Opens cell (x, y) if it is a wall and closes it if it is open
+    void toggle(int x, int y)
+    {
+        setOpen(x, y, !maze.isOpen(x, y));
+    }
+
+    // Whether opening cell would join a reachable cell to one of the last route more than
+    // two steps further from the source, a shortcut, or to an unreachable open cell when
+    // the target is unreachable, when every reachable cell has its distance
+    private boolean joins(int cell)
+    {
+        int nearest = INFINITE;
+        for (int k = 0; k < 4; k++)
+            nearest = Math.min(nearest, g[cell + offset[k]]);
+        if (nearest == INFINITE)
+            return false;
+
+        for (int k = 0; k < 4; k++) {
+            int next = cell + offset[k];
+            if (!maze.isOpen(next))
+                continue;
+            if (g[next] == INFINITE ? unreachable
+                    : g[next] > nearest + 2 && (onRoute[next >>> 6] & (1L << next)) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    // The shortest route from (sx, sy) to (tx, ty) in the maze as it is now, or null if
+    // there is none.  Route cells are row-major (y * width + x), route.expanded is the
+    // number of cells settled and flooded to repair it, and route.enqueued and peakQueue
+    // count the heap entries pushed since the last query and the most held at once.
+    Route route()
+    {
+        // a walled in target would settle everything the source can reach to find out
+        if (source != target && !maze.isOpen(target))
+            return null;
+
+        int expanded = stale ? 0 : settle();
+        if (stale || expanded > budget)
+            expanded += flood() + settle();
+        stale = false;
+
+        // forget the last route, this one is marked as it is read back
+        for (int index : routeIndices)
+            onRoute[index >>> 6] &= ~(1L << index);
+        routeIndices = new int[0];
+
+        unreachable = g[target] == INFINITE;
+        if (unreachable)
+            return stats(null, expanded);
+
+        // each step back goes to a neighbour one closer to the source
+        int length = g[target];
+        int[] path = new int[length + 1];
+        routeIndices = new int[length + 1];
+        int cell = target;
+        for (int step = length; step > 0; step--) {
+            path[step] = maze.cell(cell);
+            routeIndices[step] = cell;
+            onRoute[cell >>> 6] |= 1L << cell;
+            for (int k = 0; k < 4; k++) {
+                int prev = cell + offset[k];
+                if (g[prev] == step - 1) {
+                    cell = prev;
+                    break;
+                }
+            }
+        }
+        path[0] = maze.cell(cell);
+        routeIndices[0] = cell;
+        onRoute[cell >>> 6] |= 1L << cell;
+
+        return stats(new Route(length, path), expanded);
+    }
+
+    // Fills in the counts of a route and starts counting afresh for the next query
+    private Route stats(Route route, int expanded)
+    {
+        if (route != null) {
+            route.expanded = expanded;
+            route.enqueued = pushed;
+            route.peakQueue = peak;
+        }
+        pushed = 0;
+        peak = heapSize;
+        return route;
+    }
+
+    // Settles inconsistent cells until the target's distance is known, returning how many,
+    // or stops once more than budget have been settled
+    private int settle()
+    {
+        int expanded = 0;
+        while (heapSize > 0 && expanded <= budget)
+        {
+            // drop the entries left behind by a cell whose key has changed since
+            int cell = cells[0];
+            if (g[cell] == rhs[cell] || keys[0] != key(cell)) {
+                pop();
+                continue;
+            }
+            // the target's key, its h being 0
+            if (rhs[target] == g[target] && keys[0] >= ((long) g[target] << 32 | g[target]))
+                break;
+
+            pop();
+            expanded++;
+
+            if (g[cell] > rhs[cell]) {
+                // a shorter way in: settle it and let the open neighbours use it
+                int d = g[cell] = rhs[cell];
+                for (int k = 0; k < 4; k++) {
+                    int next = cell + offset[k];
+                    if (d + 1 < rhs[next] && next != source && maze.isOpen(next))
+                        lower(next, d + 1);
+                }
+            } else {
+                // the way in has gone: forget it and look again, here and at the
+                // neighbours whose way in may have been through this cell
+                int d = g[cell];
+                g[cell] = INFINITE;
+                update(cell, true);
+                for (int k = 0; k < 4; k++) {
+                    int next = cell + offset[k];
+                    if (rhs[next] == d + 1)
+                        update(next);
+                }
+            }
+        }
+        return expanded;
+    }
+
+    // Sets the distance from the source of every cell up to the target's with a wave
+    // expansion, as GridSearch searches, leaving the cells beyond unknown.  The last wave,
+    // the cells as far as the target, is left unexpanded: each is queued with its distance
+    // as rhs and an infinite g, which keeps every cell not queued consistent, so settle
+    // goes on from there.  Returns the number of cells reached.
+    private int flood()
+    {
+        Arrays.fill(g, INFINITE);
+        long[] open = maze.open;
+        long[] reached = new long[open.length];
+
+        // like GridSearch it marks the cells reached in a bit plane and keeps the distance
+        // of the wave, so g is only written to
+        IntQueue q = new IntQueue(maze.width + maze.height);
+        g[source] = 0;
+        reached[source >>> 6] |= 1L << source;
+        q.add(source);
+        int count = 1;
+
+        for (int d = 1; !q.isEmpty() && g[target] == INFINITE; d++)
+        {
+            for (int wave = q.size(); wave > 0; wave--)
+            {
+                int cell = q.poll();
+                for (int k = 0; k < 4; k++)
+                {
+                    int next = cell + offset[k];
+                    int w = next >>> 6;
+                    long bit = 1L << next;
+                    if ((open[w] & ~reached[w] & bit) == 0)
+                        continue;
+                    reached[w] |= bit;
+                    g[next] = d;
+                    q.add(next);
+                    count++;
+                }
+            }
+        }
+
+        System.arraycopy(g, 0, rhs, 0, g.length);
+        budget = Math.max(1024, count >>> 4);
+        heapSize = 0;
+        while (!q.isEmpty()) {
+            int cell = q.poll();
+            g[cell] = INFINITE;
+            push(key(cell), cell);
+        }
+        return count;
+    }
+
+    // Recomputes the rhs of a cell from its neighbours and queues it if it is inconsistent.
+    // Every inconsistent cell already has an entry with its current key, so it is only
+    // pushed again if its key changes.
+    private void update(int cell)
+    {
+        update(cell, false);
+    }
+
+    // update, pushing the cell whatever its key if it was just polled
+    private void update(int cell, boolean polled)
+    {
+        int before = rhs[cell];
+        if (cell != source) {
+            int best = INFINITE;
+            if (maze.isOpen(cell))
+                for (int k = 0; k < 4; k++)
+                    best = Math.min(best, g[cell + offset[k]]);
+            rhs[cell] = best == INFINITE ? INFINITE : best + 1;
+        }
+
+        queue(cell, before, polled);
+    }
+
+    // Pushes a cell whose rhs was before if it is inconsistent and it has no entry with its
+    // key yet: it was just polled, was consistent, or its key has changed
+    private void queue(int cell, int before, boolean polled)
+    {
+        int d = g[cell];
+        if (d != rhs[cell] && (polled || d == before || Math.min(d, before) != Math.min(d, rhs[cell])))
+            push(key(cell), cell);
+    }
+
+    // Lowers the rhs of an open cell to value and queues it if its key changes
+    private void lower(int cell, int value)
+    {
+        int before = rhs[cell];
+        rhs[cell] = value;
+        queue(cell, before, false);
+    }
+
+    // (min(g, rhs) + h) << 32 | min(g, rhs), the order in which cells are settled
+    private long key(int cell)
+    {
+        int d = Math.min(g[cell], rhs[cell]);
+        if (d == INFINITE)
+            return Long.MAX_VALUE;
+        int row = cell / maze.stride;
+        int h = Math.abs(cell - row * maze.stride - tx) + Math.abs(row - 1 - ty);
+        return (long) (d + h) << 32 | d;
+    }
+
+    private void push(long key, int cell)
+    {
+        if (heapSize == keys.length) {
+            sweep();
+            if (heapSize > keys.length >> 1) {
+                keys = Arrays.copyOf(keys, keys.length << 1);
+                cells = Arrays.copyOf(cells, cells.length << 1);
+            }
+        }
+        int i = heapSize++;
+        pushed++;
+        peak = Math.max(peak, heapSize);
+        while (i > 0 && keys[(i - 1) >>> 1] > key) {
+            keys[i] = keys[(i - 1) >>> 1];
+            cells[i] = cells[(i - 1) >>> 1];
+            i = (i - 1) >>> 1;
+        }
+        keys[i] = key;
+        cells[i] = cell;
+    }
+
+    private void pop()
+    {
+        long last = keys[--heapSize];
+        int lastCell = cells[heapSize];
+        int i = 0;
+        for (int child; (child = 2 * i + 1) < heapSize; i = child) {
+            if (child + 1 < heapSize && keys[child + 1] < keys[child])
+                child++;
+            if (keys[child] >= last)
+                break;
+            keys[i] = keys[child];
+            cells[i] = cells[child];
+        }
+        keys[i] = last;
+        cells[i] = lastCell;
+    }
+
+    // Removes the entries that no longer match their cell and restores the heap order
+    private void sweep()
+    {
+        int kept = 0;
+        for (int i = 0; i < heapSize; i++) {
+            int cell = cells[i];
+            if (g[cell] != rhs[cell] && keys[i] == key(cell)) {
+                keys[kept] = keys[i];
+                cells[kept++] = cell;
+            }
+        }
+        heapSize = kept;
+
+        for (int i = (heapSize >>> 1) - 1; i >= 0; i--) {
+            long key = keys[i];
+            int cell = cells[i];
+            int at = i;
+            for (int child; (child = 2 * at + 1) < heapSize; at = child) {
+                if (child + 1 < heapSize && keys[child + 1] < keys[child])
+                    child++;
+                if (keys[child] >= key)
+                    break;
+                keys[at] = keys[child];
+                cells[at] = cells[child];
+            }
+            keys[at] = key;
+            cells[at] = cell;
+        }
+    }
+
+    // heap used by the distances and the queue, not counting the maze
+    long sizeInBytes() {
+        return 8L * g.length + 12L * keys.length;
+    }
+}
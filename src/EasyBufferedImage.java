@@ -252,10 +252,12 @@ public class EasyBufferedImage extends BufferedImage {
 	int bands = getSampleModel().getNumBands();
 	int[][][] pixels = new int[height][width][bands];
 	WritableRaster raster = getRaster();
+	int[] row = new int[width];
 	for(int i=0; i<height; i++) {
-	    for(int j=0; j<width; j++) {
-		for(int k=0; k<bands; k++) {
-		    pixels[i][j][k] = raster.getSample(j,i,k);
+	    for(int k=0; k<bands; k++) {
+		readRow(raster, i, k, row, 0, 1);
+		for(int j=0; j<width; j++) {
+		    pixels[i][j][k] = row[j];
 		}
 	    }
 	}
@@ -278,22 +280,14 @@ public class EasyBufferedImage extends BufferedImage {
 	int[][] pixels = new int[height][width];
 	WritableRaster raster = getRaster();
 	if(band == GRAY && isColor()) {
-	    float hsb[] = new float[3];
+	    int[] green = new int[width];
+	    int[] blue = new int[width];
 	    for(int i=0; i<height; i++) {
-		for(int j=0; j<width; j++) {
-		    int pixel = getRGB(j, i);
-		    Color.RGBtoHSB(raster.getSample(j, i, 0),
-				   raster.getSample(j, i, 1),
-				   raster.getSample(j, i, 2),
-				   hsb);
-		    pixels[i][j] = clamp(hsb[2] * 255);
-		}
+		readBrightnessRow(raster, i, pixels[i], green, blue);
 	    }
 	} else {
 	    for(int i=0; i<height; i++) {
-		for(int j=0; j<width; j++) {
-		    pixels[i][j] = raster.getSample(j,i,band);
-		}
+		readRow(raster, i, band, pixels[i], 0, 1);
 	    }
 	}
 
@@ -316,9 +310,7 @@ public class EasyBufferedImage extends BufferedImage {
 	int[]pixels = new int[height * width];
 	WritableRaster raster = getRaster();
 	for(int i=0; i<height; i++) {
-	    for(int j=0; j<width; j++) {
-		pixels[i*width + j] = raster.getSample(j,i,band);
-	    }
+	    readRow(raster, i, band, pixels, i*width, 1);
 	}
 
 	return pixels;
@@ -340,10 +332,8 @@ public class EasyBufferedImage extends BufferedImage {
 	int[]pixels = new int[height * width * bands];
 	WritableRaster raster = getRaster();
 	for(int i=0; i<height; i++) {
-	    for(int j=0; j<width; j++) {
-		for(int k=0; k<bands; k++) {
-		    pixels[i*width*bands + j*bands + k] = raster.getSample(j,i,k); // probably not correct here.............
-		}
+	    for(int k=0; k<bands; k++) {
+		readRow(raster, i, k, pixels, i*width*bands + k, bands);
 	    }
 	}
 
@@ -371,23 +361,13 @@ public class EasyBufferedImage extends BufferedImage {
 	WritableRaster raster = getRaster();
 
 	if(band == GRAY && isColor()) {
-	    float hsb[] = new float[3];
+	    int[][] rgb = new int[3][width];
 	    for(int i=0; i<height; i++) {
-		for(int j=0; j<width; j++) {
-		    Color.RGBtoHSB(raster.getSample(j, i, 0),
-				   raster.getSample(j, i, 1),
-				   raster.getSample(j, i, 2),
-				   hsb);
-		    hsb[2] = (float)(pixels[i * width + j] / 255.0);
-		    int pixel = Color.HSBtoRGB(hsb[0], hsb[1], hsb[2]);
-		    setRGB(j, i, pixel);
-		}
+		writeBrightnessRow(raster, i, pixels, i*width, rgb);
 	    }
 	} else {
 	    for(int i=0; i<height; i++) {
-		for(int j=0; j<width; j++) {
-		    raster.setSample(j, i, band, pixels[i*width + j]);
-		}
+		writeRow(raster, i, band, pixels, i*width, 1);
 	    }
 	}
     }
@@ -413,23 +393,13 @@ public class EasyBufferedImage extends BufferedImage {
 
 	WritableRaster raster = getRaster();
 	if(band == GRAY && isColor()) {
-	    float hsb[] = new float[3];
+	    int[][] rgb = new int[3][width];
 	    for(int i=0; i<height; i++) {
-		for(int j=0; j<width; j++) {
-		    Color.RGBtoHSB(raster.getSample(j, i, 0),
-				   raster.getSample(j, i, 1),
-				   raster.getSample(j, i, 2),
-				   hsb);
-		    hsb[2] = (float)(pixels[i][j] / 255.0);
-		    int pixel = Color.HSBtoRGB(hsb[0], hsb[1], hsb[2]);
-		    setRGB(j, i, pixel);
-		}
+		writeBrightnessRow(raster, i, pixels[i], 0, rgb);
 	    }
 	} else {
 	    for(int i=0; i<height; i++) {
-		for(int j=0; j<width; j++) {
-		    raster.setSample(j, i, band, pixels[i][j]);
-		}
+		writeRow(raster, i, band, pixels[i], 0, 1);
 	    }
 	}
     }
@@ -455,14 +425,235 @@ public class EasyBufferedImage extends BufferedImage {
 	   pixels[0][0] == null ||
 	   width != pixels[0].length || height != pixels.length || bands != pixels[0][0].length) 
 	    throw new IllegalArgumentException("pixel array doesn't match the image size");
-	
+
 	WritableRaster raster = getRaster();
+	int[] row = new int[width];
 	for(int i=0; i<height; i++) {
-	    for(int j=0; j<width; j++) {
-		for(int k=0; k<bands; k++) {
-		    raster.setSample(j, i, k, pixels[i][j][k]);
+	    for(int k=0; k<bands; k++) {
+		for(int j=0; j<width; j++) {
+		    row[j] = pixels[i][j][k];
 		}
+		writeRow(raster, i, k, row, 0, 1);
+	    }
+	}
+    }
+
+    /*
+     * Bulk row access.  The public get/set pixel methods move a whole row of one band
+     * at a time through the helpers below, which read and write the DataBuffer directly
+     * for the layouts a BufferedImage uses (packed int pixels, interleaved bytes and
+     * packed binary pixels) and fall back to Raster.getSamples/setSamples otherwise.
+     * The values are exactly those of Raster.getSample/setSample.
+     */
+
+    // the brightness that Color.RGBtoHSB gives to each channel maximum, scaled back to 0-255
+    private static final int[] BRIGHTNESS = new int[256];
+    static {
+	for(int v=0; v<256; v++) BRIGHTNESS[v] = clamp(((float)v / 255.0f) * 255);
+    }
+
+    // the rgb value Color.HSBtoRGB gives an unsaturated pixel for each brightness 0-255
+    private static final int[] GRAY_RGB = new int[256];
+    static {
+	for(int v=0; v<256; v++) GRAY_RGB[v] = grayRGB(v);
+    }
+
+    private static int grayRGB(int value) {
+	int v = (int)((float)(value / 255.0) * 255.0f + 0.5f);
+	return 0xff000000 | (v << 16) | (v << 8) | (v << 0);
+    }
+
+    private static int brightness(int cmax) {
+	if(cmax >= 0 && cmax < 256) return BRIGHTNESS[cmax];
+	return clamp(((float)cmax / 255.0f) * 255);
+    }
+
+    // Copies row y of a band into out[off], out[off + step], out[off + 2*step], ...
+    private static void readRow(WritableRaster raster, int y, int band, int[] out, int off, int step) {
+	int width = raster.getWidth();
+	SampleModel model = raster.getSampleModel();
+	DataBuffer buffer = raster.getDataBuffer();
+	int sx = raster.getMinX() - raster.getSampleModelTranslateX();
+	int sy = y - raster.getSampleModelTranslateY();
+
+	if(model instanceof SinglePixelPackedSampleModel && buffer instanceof DataBufferInt) {
+	    SinglePixelPackedSampleModel packed = (SinglePixelPackedSampleModel)model;
+	    int[] data = ((DataBufferInt)buffer).getData();
+	    int mask = packed.getBitMasks()[band];
+	    int shift = packed.getBitOffsets()[band];
+	    int p = buffer.getOffset() + sy*packed.getScanlineStride() + sx;
+	    for(int j=0; j<width; j++, off += step) {
+		out[off] = (data[p + j] & mask) >>> shift;
+	    }
+	} else if(model instanceof ComponentSampleModel && buffer instanceof DataBufferByte) {
+	    ComponentSampleModel component = (ComponentSampleModel)model;
+	    int bank = component.getBankIndices()[band];
+	    byte[] data = ((DataBufferByte)buffer).getData(bank);
+	    int pixelStride = component.getPixelStride();
+	    int p = buffer.getOffsets()[bank] + sy*component.getScanlineStride()
+		+ sx*pixelStride + component.getBandOffsets()[band];
+	    for(int j=0; j<width; j++, off += step, p += pixelStride) {
+		out[off] = data[p] & 0xff;
 	    }
+	} else if(model instanceof MultiPixelPackedSampleModel && buffer instanceof DataBufferByte) {
+	    if(band != 0) throw new ArrayIndexOutOfBoundsException("band " + band);
+	    MultiPixelPackedSampleModel multi = (MultiPixelPackedSampleModel)model;
+	    byte[] data = ((DataBufferByte)buffer).getData();
+	    int bits = multi.getPixelBitStride();
+	    int mask = (1 << bits) - 1;
+	    int p = buffer.getOffset() + sy*multi.getScanlineStride();
+	    int bitnum = multi.getDataBitOffset() + sx*bits;
+	    if(bits == 1 && (bitnum & 7) == 0) {
+		// binary (black and white) image, unpack a byte of 8 pixels at a time
+		p += bitnum >> 3;
+		int j = 0;
+		for(; j+8 <= width; j += 8) {
+		    int element = data[p++];
+		    for(int b=7; b>=0; b--, off += step) {
+			out[off] = (element >> b) & 1;
+		    }
+		}
+		for(int b=7; j<width; j++, b--, off += step) {
+		    out[off] = (data[p] >> b) & 1;
+		}
+	    } else {
+		for(int j=0; j<width; j++, off += step, bitnum += bits) {
+		    int element = data[p + (bitnum >> 3)] & 0xff;
+		    out[off] = (element >> (8 - (bitnum & 7) - bits)) & mask;
+		}
+	    }
+	} else {
+	    int[] samples = raster.getSamples(raster.getMinX(), y, width, 1, band, (int[])null);
+	    for(int j=0; j<width; j++, off += step) {
+		out[off] = samples[j];
+	    }
+	}
+    }
+
+    // Stores in[off], in[off + step], in[off + 2*step], ... as row y of a band
+    private static void writeRow(WritableRaster raster, int y, int band, int[] in, int off, int step) {
+	int width = raster.getWidth();
+	SampleModel model = raster.getSampleModel();
+	DataBuffer buffer = raster.getDataBuffer();
+	int sx = raster.getMinX() - raster.getSampleModelTranslateX();
+	int sy = y - raster.getSampleModelTranslateY();
+
+	if(model instanceof SinglePixelPackedSampleModel && buffer instanceof DataBufferInt) {
+	    SinglePixelPackedSampleModel packed = (SinglePixelPackedSampleModel)model;
+	    int[] data = ((DataBufferInt)buffer).getData();
+	    int mask = packed.getBitMasks()[band];
+	    int shift = packed.getBitOffsets()[band];
+	    int p = buffer.getOffset() + sy*packed.getScanlineStride() + sx;
+	    for(int j=0; j<width; j++, off += step) {
+		data[p + j] = (data[p + j] & ~mask) | ((in[off] << shift) & mask);
+	    }
+	} else if(model instanceof ComponentSampleModel && buffer instanceof DataBufferByte) {
+	    ComponentSampleModel component = (ComponentSampleModel)model;
+	    int bank = component.getBankIndices()[band];
+	    byte[] data = ((DataBufferByte)buffer).getData(bank);
+	    int pixelStride = component.getPixelStride();
+	    int p = buffer.getOffsets()[bank] + sy*component.getScanlineStride()
+		+ sx*pixelStride + component.getBandOffsets()[band];
+	    for(int j=0; j<width; j++, off += step, p += pixelStride) {
+		data[p] = (byte)in[off];
+	    }
+	} else if(model instanceof MultiPixelPackedSampleModel && buffer instanceof DataBufferByte) {
+	    if(band != 0) throw new ArrayIndexOutOfBoundsException("band " + band);
+	    MultiPixelPackedSampleModel multi = (MultiPixelPackedSampleModel)model;
+	    byte[] data = ((DataBufferByte)buffer).getData();
+	    int bits = multi.getPixelBitStride();
+	    int mask = (1 << bits) - 1;
+	    int p = buffer.getOffset() + sy*multi.getScanlineStride();
+	    int bitnum = multi.getDataBitOffset() + sx*bits;
+	    for(int j=0; j<width; j++, off += step, bitnum += bits) {
+		int shift = 8 - (bitnum & 7) - bits;
+		int k = p + (bitnum >> 3);
+		data[k] = (byte)((data[k] & ~(mask << shift)) | ((in[off] & mask) << shift));
+	    }
+	} else {
+	    int[] samples = new int[width];
+	    for(int j=0; j<width; j++, off += step) {
+		samples[j] = in[off];
+	    }
+	    raster.setSamples(raster.getMinX(), y, width, 1, band, samples);
+	}
+    }
+
+    // Offset of row y in the int array of a TYPE_INT_RGB image, whose elements are
+    // the 0x00RRGGBB pixel values, or -1 if the raster is laid out any other way.
+    private int intRgbRow(WritableRaster raster, int y) {
+	if(getType() != TYPE_INT_RGB || !(raster.getDataBuffer() instanceof DataBufferInt)
+	   || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) return -1;
+	SinglePixelPackedSampleModel packed = (SinglePixelPackedSampleModel)raster.getSampleModel();
+	return raster.getDataBuffer().getOffset()
+	    + (y - raster.getSampleModelTranslateY())*packed.getScanlineStride()
+	    + raster.getMinX() - raster.getSampleModelTranslateX();
+    }
+
+    // The HSB brightness of row y of a color image, as getPixels2D(GRAY) computes it.
+    // green and blue are scratch rows of the image width.
+    private void readBrightnessRow(WritableRaster raster, int y, int[] out, int[] green, int[] blue) {
+	int p = intRgbRow(raster, y);
+	if(p >= 0) {
+	    int[] data = ((DataBufferInt)raster.getDataBuffer()).getData();
+	    for(int j=0; j<out.length; j++) {
+		int pixel = data[p + j];
+		int cmax = Math.max((pixel >> 16) & 0xff, Math.max((pixel >> 8) & 0xff, pixel & 0xff));
+		out[j] = BRIGHTNESS[cmax];
+	    }
+	    return;
+	}
+
+	readRow(raster, y, 0, out, 0, 1);
+	readRow(raster, y, 1, green, 0, 1);
+	readRow(raster, y, 2, blue, 0, 1);
+	for(int j=0; j<out.length; j++) {
+	    int cmax = (out[j] > green[j]) ? out[j] : green[j];
+	    if(blue[j] > cmax) cmax = blue[j];
+	    out[j] = brightness(cmax);
+	}
+    }
+
+    // Replaces the HSB brightness of row y of a color image with in[off...], as
+    // setPixels(pixels, GRAY) does.  rgb holds three scratch rows of the image width.
+    private void writeBrightnessRow(WritableRaster raster, int y, int[] in, int off, int[][] rgb) {
+	int[] red = rgb[0], green = rgb[1], blue = rgb[2];
+	int width = red.length;
+	int p = intRgbRow(raster, y);
+	int[] data = null;
+	if(p >= 0) {
+	    data = ((DataBufferInt)raster.getDataBuffer()).getData();
+	    for(int j=0; j<width; j++) {
+		int pixel = data[p + j];
+		red[j] = (pixel >> 16) & 0xff;
+		green[j] = (pixel >> 8) & 0xff;
+		blue[j] = pixel & 0xff;
+	    }
+	} else {
+	    readRow(raster, y, 0, red, 0, 1);
+	    readRow(raster, y, 1, green, 0, 1);
+	    readRow(raster, y, 2, blue, 0, 1);
+	}
+
+	float hsb[] = new float[3];
+	for(int j=0; j<width; j++) {
+	    int value = in[off + j];
+	    if(red[j] == green[j] && green[j] == blue[j]) {
+		// no saturation: Color.HSBtoRGB gives the same value in every channel
+		red[j] = (value >= 0 && value < 256) ? GRAY_RGB[value] : grayRGB(value);
+	    } else {
+		Color.RGBtoHSB(red[j], green[j], blue[j], hsb);
+		red[j] = Color.HSBtoRGB(hsb[0], hsb[1], (float)(value / 255.0));
+	    }
+	}
+
+	if(data != null) {
+	    // a TYPE_INT_RGB pixel is the rgb value without its alpha
+	    for(int j=0; j<width; j++) {
+		data[p + j] = red[j] & 0xffffff;
+	    }
+	} else {
+	    setRGB(0, y, width, 1, red, 0, width);
 	}
     }
 
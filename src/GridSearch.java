@@ -0,0 +1,255 @@
+/**
+ * An allocation free version of the Lee wave expansion found in Main.
+ * <p>
+ * Cells are addressed by their row-major index (i * N + j) rather than by Node
+ * objects, the wavefront is an IntQueue of those indices and the distance of a
+ * cell is never stored: the queue is drained one wave (layer) at a time and the
+ * wave counter is the distance.  Expanding a cell therefore allocates nothing,
+ * which keeps the garbage collector out of the way on the multi-megapixel mazes.
+ * <p>
+ * The int[][] methods mirror the signatures of Main.endDist and Main.BFS so they
+ * can be swapped in directly.  The BitGrid overload works on the packed maze and
+ * keeps the parent directions in two bit planes laid out like the grid.
+ */
+class GridSearch
+{
+    // row-major offsets of the 4 possible movements, in the same order as Main.row/col
+    private static final int row[] = { -1, 0, 0, 1 };
+    private static final int col[] = { 0, -1, 1, 0 };
+
+    // Length of the shortest path from source cell (i, j) to destination cell (x, y),
+    // or Integer.MAX_VALUE if the destination can't be reached (same as Main.endDist).
+    static int endDist(int mat[][], int i, int j, int x, int y, int M, int N)
+    {
+        Route route = solve(mat, i, j, x, y, M, N);
+        return route == null ? Integer.MAX_VALUE : route.length;
+    }
+
+    // Marks the shortest path from source cell (i, j) to destination cell (x, y) in
+    // mat with the value 128 and returns mat (same as Main.BFS).
+    static int[][] BFS(int mat[][], int i, int j, int x, int y, int M, int N)
+    {
+        Route route = solve(mat, i, j, x, y, M, N);
+
+        mat[i][j] = 128;
+        if (route != null)
+            for (int cell : route.cells)
+                mat[cell / N][cell % N] = 128;
+
+        return mat;
+    }
+
+    // Find the shortest route from source cell (i, j) to destination cell (x, y).
+    // Returns null if the destination can't be reached.
+    static Route solve(int mat[][], int i, int j, int x, int y, int M, int N)
+    {
+        int source = i * N + j;
+        int target = x * N + y;
+
+        boolean[] visited = new boolean[M * N];
+
+        // 2-bit parent direction per cell, four cells to a byte
+        byte[] parent = new byte[(M * N + 3) >> 2];
+
+        IntQueue q = new IntQueue(M + N);
+
+        visited[source] = true;
+        q.add(source);
+
+        int dist = 0;
+        boolean found = source == target;
+
+        // one iteration per wave, the queue holds exactly the cells marked dist
+        while (!found && !q.isEmpty())
+        {
+            dist++;
+            for (int wave = q.size(); wave > 0 && !found; wave--)
+            {
+                int cell = q.poll();
+                int ci = cell / N;
+                int cj = cell - ci * N;
+
+                for (int k = 0; k < 4; k++)
+                {
+                    int nextI = ci + row[k];
+                    int nextJ = cj + col[k];
+                    if (nextI < 0 || nextI >= M || nextJ < 0 || nextJ >= N)
+                        continue;
+
+                    int next = nextI * N + nextJ;
+                    if (visited[next] || mat[nextI][nextJ] != 1)
+                        continue;
+
+                    visited[next] = true;
+                    parent[next >> 2] |= k << ((next & 3) << 1);
+
+                    if (next == target) {
+                        found = true;
+                        break;
+                    }
+                    q.add(next);
+                }
+            }
+        }
+
+        if (!found)
+            return null;
+
+        return backtrace(parent, source, target, dist, N);
+    }
+
+    // Walks the 2-bit parent directions from target back to source.
+    static Route backtrace(byte[] parent, int source, int target, int dist, int N)
+    {
+        int[] cells = new int[dist + 1];
+        int cell = target;
+        for (int step = dist; step > 0; step--)
+        {
+            cells[step] = cell;
+            int k = (parent[cell >> 2] >> ((cell & 3) << 1)) & 3;
+            cell -= row[k] * N + col[k];
+        }
+        cells[0] = source;
+
+        return new Route(dist, cells);
+    }
+
+    // Find the shortest route from (sx, sy) to (tx, ty) in a packed maze, using the
+    // grid's own visited plane.  Route cells are row-major (y * width + x).
+    // Returns null if the destination can't be reached.
+    static Route solve(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+
+        long[] open = maze.open;
+        long[] visited = maze.visited;
+        maze.clearVisited();
+
+        // the parent direction k is split over two bit planes, low bit and high bit
+        long[] parentLo = new long[open.length];
+        long[] parentHi = new long[open.length];
+
+        // bit index offsets of the 4 possible movements, in the same order as row/col
+        int[] offset = { -maze.stride, -1, 1, maze.stride };
+
+        IntQueue q = new IntQueue(maze.width + maze.height);
+
+        maze.visit(source);
+        q.add(source);
+
+        int dist = 0;
+        int expanded = 0;
+        int enqueued = 1, peakQueue = 1;
+        boolean found = source == target;
+
+        while (!found && !q.isEmpty())
+        {
+            dist++;
+            peakQueue = Math.max(peakQueue, q.size());
+            for (int wave = q.size(); wave > 0 && !found; wave--)
+            {
+                int cell = q.poll();
+                expanded++;
+
+                for (int k = 0; k < 4; k++)
+                {
+                    int next = cell + offset[k];
+                    int w = next >>> 6;
+                    long bit = 1L << next;
+
+                    // the padding cells are never open, so no bounds check is needed
+                    if ((open[w] & ~visited[w] & bit) == 0)
+                        continue;
+
+                    visited[w] |= bit;
+                    if ((k & 1) != 0) parentLo[w] |= bit;
+                    if ((k & 2) != 0) parentHi[w] |= bit;
+
+                    if (next == target) {
+                        found = true;
+                        break;
+                    }
+                    q.add(next);
+                    enqueued++;
+                }
+            }
+        }
+
+        if (!found)
+            return null;
+
+        Route route = backtrace(maze, parentLo, parentHi, offset, target, dist);
+        route.expanded = expanded;
+        route.enqueued = enqueued;
+        route.peakQueue = peakQueue;
+        return route;
+    }
+
+    // Floods the whole maze from (sx, sy), leaving every cell reached marked in the grid's
+    // visited plane and its 2-bit parent direction in parentLo and parentHi (laid out like
+    // the grid).  Returns the number of cells reached, including the source.
+    static long flood(BitGrid maze, int sx, int sy, long[] parentLo, long[] parentHi)
+    {
+        int source = maze.index(sx, sy);
+
+        long[] open = maze.open;
+        long[] visited = maze.visited;
+        maze.clearVisited();
+
+        int[] offset = { -maze.stride, -1, 1, maze.stride };
+
+        IntQueue q = new IntQueue(maze.width + maze.height);
+
+        maze.visit(source);
+        q.add(source);
+        long reached = 1;
+
+        while (!q.isEmpty())
+        {
+            int cell = q.poll();
+            for (int k = 0; k < 4; k++)
+            {
+                int next = cell + offset[k];
+                int w = next >>> 6;
+                long bit = 1L << next;
+                if ((open[w] & ~visited[w] & bit) == 0)
+                    continue;
+
+                visited[w] |= bit;
+                if ((k & 1) != 0) parentLo[w] |= bit;
+                if ((k & 2) != 0) parentHi[w] |= bit;
+                reached++;
+                q.add(next);
+            }
+        }
+
+        return reached;
+    }
+
+    // Walks the parent direction planes from target back to source.
+    static Route backtrace(BitGrid maze, long[] parentLo, long[] parentHi, int[] offset,
+                           int target, int dist)
+    {
+        int[] cells = new int[dist + 1];
+        trace(maze, parentLo, parentHi, offset, target, dist, cells, dist, -1);
+        return new Route(dist, cells);
+    }
+
+    // Follows the parent directions for steps moves starting at cell, storing the row-major
+    // numbers of the steps + 1 cells passed in cells[at], cells[at + dir], cells[at + 2*dir], ...
+    // Returns the bit index of the last cell, the root of the tree if steps is the depth of cell.
+    static int trace(BitGrid maze, long[] parentLo, long[] parentHi, int[] offset,
+                     int cell, int steps, int[] cells, int at, int dir)
+    {
+        for (; steps > 0; steps--, at += dir)
+        {
+            cells[at] = maze.cell(cell);
+            int w = cell >>> 6;
+            int k = (int) ((parentLo[w] >>> cell) & 1) | (int) (((parentHi[w] >>> cell) & 1) << 1);
+            cell -= offset[k];
+        }
+        cells[at] = maze.cell(cell);
+        return cell;
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * A first-in first-out queue of primitive ints backed by a ring buffer.  Used as the
+ * wavefront of the grid searches so that expanding a cell never allocates.  The buffer
+ * starts at the requested capacity and doubles when it runs out of room, which only
+ * happens a handful of times per search.
+ */
+class IntQueue
+{
+    private int[] ring;
+    private int mask;
+    private int head, tail;
+
+    IntQueue(int capacity) {
+        int size = 16;
+        while (size < capacity && size < (1 << 30))
+            size <<= 1;
+        ring = new int[size];
+        mask = size - 1;
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    int size() {
+        return tail - head;
+    }
+
+    void clear() {
+        head = tail = 0;
+    }
+
+    void add(int value) {
+        if (tail - head == ring.length)
+            grow();
+        ring[tail++ & mask] = value;
+    }
+
+    int poll() {
+        return ring[head++ & mask];
+    }
+
+    private void grow() {
+        int[] bigger = new int[ring.length << 1];
+        for (int k = head; k != tail; k++)
+            bigger[k - head] = ring[k & mask];
+        tail -= head;
+        head = 0;
+        ring = bigger;
+        mask = bigger.length - 1;
+    }
+}
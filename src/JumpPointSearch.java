@@ -0,0 +1,242 @@
+import java.util.Arrays;
+
+/**
+ * Jump point search for a 4-connected BitGrid.
+ * <p>
+ * JPS is A* that does not put every cell of a straight corridor or an open area on
+ * the open list.  From a node it jumps in a straight line until it reaches a cell
+ * where a shortest route could have to turn (a jump point): the target, a cell next
+ * to the corner of a wall (a forced neighbour), or, when jumping vertically, a cell
+ * from which a horizontal jump finds a jump point.  Only the jump points are queued,
+ * so a room of the blank maze or a long braid corridor costs a handful of nodes.
+ * <p>
+ * Horizontal jumps read the grid a 64 bit word at a time: the open bits of the rows
+ * above and below give every forced neighbour in the word at once, and together with
+ * the walls of the row itself the first jump point is one numberOfTrailingZeros (or
+ * numberOfLeadingZeros going left) away.  Vertical jumps step one cell at a time and
+ * run a horizontal jump both ways from each cell.
+ * <p>
+ * The open list is a BucketQueue on g + h with the Manhattan distance as h.  The
+ * length of the route is the g of the target node, and the route is filled in by
+ * walking the straight segments between the jump points.
+ */
+class JumpPointSearch
+{
+    private final BitGrid maze;
+    private final long[] open;
+    private final int stride, words;
+    private final int target, tx, ty;
+
+    // bit index offsets of the 4 possible movements, in the same order as Main.row/col
+    private final int[] offset;
+
+    // node pool: cell, parent node, distance from the source and direction of arrival
+    private int[] nodeCell = new int[64];
+    private int[] nodeParent = new int[64];
+    private int[] nodeDist = new int[64];
+    private int[] nodeDir = new int[64];
+    private int nodes;
+
+    private JumpPointSearch(BitGrid maze, int tx, int ty) {
+        this.maze = maze;
+        this.open = maze.open;
+        this.stride = maze.stride;
+        this.words = maze.stride >>> 6;
+        this.target = maze.index(tx, ty);
+        this.tx = tx;
+        this.ty = ty;
+        this.offset = new int[] { -stride, -1, 1, stride };
+    }
+
+    // Find the shortest route from (sx, sy) to (tx, ty).  Route cells are row-major
+    // (y * width + x).  Returns null if the destination can't be reached.
+    static Route solve(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        int source = maze.index(sx, sy);
+        if (source != maze.index(tx, ty) && !maze.isOpen(tx, ty))
+            return null;
+
+        maze.clearVisited();
+        return new JumpPointSearch(maze, tx, ty).search(source);
+    }
+
+    private Route search(int source)
+    {
+        long[] visited = maze.visited;
+
+        // a jump of length n changes g + h by at most 2n
+        BucketQueue q = new BucketQueue(2 * (maze.width + maze.height) + 2);
+        q.add(node(source, -1, 0, -1), h(source));
+
+        int expanded = 0;
+
+        while (!q.isEmpty())
+        {
+            int n = q.poll();
+            int cell = nodeCell[n];
+            int w = cell >>> 6;
+            long bit = 1L << cell;
+
+            if ((visited[w] & bit) != 0)
+                continue;
+            visited[w] |= bit;
+            expanded++;
+
+            if (cell == target) {
+                Route route = route(n);
+                route.expanded = expanded;
+                return route;
+            }
+
+            int dir = nodeDir[n];
+            for (int k = 0; k < 4; k++)
+            {
+                // never turn back, and after a straight move only go on or turn sideways
+                if (dir >= 0 && k == 3 - dir)
+                    continue;
+
+                int next = jump(cell, k);
+                if (next < 0 || (visited[next >>> 6] & (1L << next)) != 0)
+                    continue;
+
+                int dist = nodeDist[n] + Math.abs(next - cell) / (k == 1 || k == 2 ? 1 : stride);
+                q.add(node(next, n, dist, k), dist + h(next));
+            }
+        }
+
+        return null;
+    }
+
+    // Jumps from cell in direction k, returns the jump point reached or -1 if none
+    private int jump(int cell, int k)
+    {
+        switch (k) {
+            case 1:
+                return jumpLeft(cell);
+            case 2:
+                return jumpRight(cell);
+            default:
+                return jumpVertical(cell, offset[k]);
+        }
+    }
+
+    // Scans right from cell for the first wall, target or cell with a forced neighbour
+    // (open above or below where the cell to its left is closed above or below)
+    private int jumpRight(int cell)
+    {
+        int w = cell >>> 6;
+        long mask = -2L << cell;
+        // the carries only reach bit 0, which the mask leaves out of the first word
+        long carryUp = 0, carryDown = 0;
+
+        for (;; w++, mask = -1L)
+        {
+            long up = open[w - words], down = open[w + words];
+            long events = ~open[w]
+                    | (up & ~(up << 1 | carryUp))
+                    | (down & ~(down << 1 | carryDown));
+            if (w == target >>> 6)
+                events |= 1L << target;
+            events &= mask;
+
+            // the padding at the end of the row is always closed, so this ends in the row
+            if (events != 0) {
+                int next = (w << 6) + Long.numberOfTrailingZeros(events);
+                return (open[w] & (1L << next)) != 0 ? next : -1;
+            }
+
+            carryUp = up >>> 63;
+            carryDown = down >>> 63;
+        }
+    }
+
+    // The mirror image of jumpRight
+    private int jumpLeft(int cell)
+    {
+        int w = cell >>> 6;
+        long mask = (1L << cell) - 1;
+        long carryUp = 0, carryDown = 0;
+
+        for (;; w--, mask = -1L)
+        {
+            long up = open[w - words], down = open[w + words];
+            long events = ~open[w]
+                    | (up & ~(up >>> 1 | carryUp))
+                    | (down & ~(down >>> 1 | carryDown));
+            if (w == target >>> 6)
+                events |= 1L << target;
+            events &= mask;
+
+            if (events != 0) {
+                int next = (w << 6) + 63 - Long.numberOfLeadingZeros(events);
+                return (open[w] & (1L << next)) != 0 ? next : -1;
+            }
+            // past x = 0 is the closed padding of the row before
+            if (w % words == 0)
+                return -1;
+
+            carryUp = up << 63;
+            carryDown = down << 63;
+        }
+    }
+
+    // Steps up (step = -stride) or down (step = stride) from cell until a jump point
+    private int jumpVertical(int cell, int step)
+    {
+        for (int next = cell + step;; next += step)
+        {
+            if (!isOpen(next))
+                return -1;
+            if (next == target)
+                return next;
+            if ((isOpen(next - 1) && !isOpen(next - 1 - step)) || (isOpen(next + 1) && !isOpen(next + 1 - step)))
+                return next;
+            if (jumpLeft(next) >= 0 || jumpRight(next) >= 0)
+                return next;
+        }
+    }
+
+    private boolean isOpen(int index) {
+        return (open[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Manhattan distance to the target
+    private int h(int cell) {
+        return Math.abs(cell % stride - tx) + Math.abs(cell / stride - 1 - ty);
+    }
+
+    private int node(int cell, int parent, int dist, int dir) {
+        if (nodes == nodeCell.length) {
+            int size = nodes << 1;
+            nodeCell = Arrays.copyOf(nodeCell, size);
+            nodeParent = Arrays.copyOf(nodeParent, size);
+            nodeDist = Arrays.copyOf(nodeDist, size);
+            nodeDir = Arrays.copyOf(nodeDir, size);
+        }
+        nodeCell[nodes] = cell;
+        nodeParent[nodes] = parent;
+        nodeDist[nodes] = dist;
+        nodeDir[nodes] = dir;
+        return nodes++;
+    }
+
+    // Fills in the straight segments between the jump points from n back to the source
+    private Route route(int n)
+    {
+        int length = nodeDist[n];
+        int[] cells = new int[length + 1];
+        int at = length;
+        int cell = nodeCell[n];
+
+        for (; nodeParent[n] >= 0; n = nodeParent[n])
+        {
+            int from = nodeCell[nodeParent[n]];
+            int step = offset[nodeDir[n]];
+            for (; cell != from; cell -= step)
+                cells[at--] = maze.cell(cell);
+        }
+        cells[0] = maze.cell(cell);
+
+        return new Route(length, cells);
+    }
+}
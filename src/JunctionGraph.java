@@ -0,0 +1,469 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A maze contracted to a weighted graph of its junctions and dead ends, searched
+ * with Dijkstra.
+ * <p>
+ * A perfect maze is almost all corridors one cell wide, and Lee's wave crawls along
+ * them a cell at a time.  Here every open cell with other than exactly two open
+ * neighbours is a node, found for 64 cells at a time from the open plane and its
+ * shifts, and every corridor of two-neighbour cells between two nodes is walked
+ * once and becomes an edge weighted by its length.  An edge is stored as the
+ * direction it leaves its node in, four slots per node, so a route is expanded back
+ * to cells by walking the corridors it takes again.  A corridor that comes back to
+ * its own node is a dead end loop and is dropped.
+ * <p>
+ * Dead ends are pruned by peeling: nodes with at most one edge left are removed one
+ * after the other, each remembering the node its last edge led to (up), until only
+ * the core where every node lies on a cycle remains.  A peeled node hangs off the
+ * rest by a single edge, so a shortest route only enters its branch when an end of
+ * the route is in it.  A query marks the nodes up from its two ends and Dijkstra
+ * never enters any other peeled node; in a perfect maze, which peels away
+ * completely, it only walks the two chains from the ends to where they meet.
+ * <p>
+ * An end inside a corridor is attached to the nodes at both ends of it, and one in
+ * a ring of corridor without any node is left to GridSearch.  The distances and
+ * parents are stamped with the query's generation as in SearchContext, so a query
+ * costs the nodes it settles, and like a SearchContext a graph must not be shared
+ * between threads.  The graph can be cached in a maze file (MazeFile.write with
+ * withGraph) so later runs skip the scan.
+ */
+class JunctionGraph
+{
+    final BitGrid maze;
+
+    // bit index of every node, in increasing order, and the same cells as a plane
+    final int[] nodes;
+    private final long[] junction;
+
+    // per node and direction, the node the corridor leads to (-1 for none) and its length
+    private final int[] to;
+    private final int[] length;
+
+    // the node a peeled node hung from, itself for the last of its component, -1 for the core
+    private final int[] up;
+
+    private final int[] offset;
+
+    // query state: distances, the slot (node * 4 + direction) each node was reached by,
+    // and the generation stamps of both and of the peeled nodes a query may enter
+    private int[] dist, via, seen, allowed;
+    private int generation;
+    private long[] heap;
+    private int heapSize;
+
+    // the ends of the current query inside corridors: node, distance and direction
+    // out of the end for each of two sides, and a route along the corridor itself
+    private final int[] from = new int[6], into = new int[6];
+    private int directLength, directDir;
+
+    private JunctionGraph(BitGrid maze, int[] nodes, int[] to, int[] length, int[] up)
+    {
+        this.maze = maze;
+        this.nodes = nodes;
+        this.to = to;
+        this.length = length;
+        this.up = up;
+        this.offset = new int[] { -maze.stride, -1, 1, maze.stride };
+        this.junction = new long[maze.open.length];
+        for (int node : nodes)
+            junction[node >>> 6] |= 1L << node;
+    }
+
+    // Contracts a maze.  The maze isn't changed, and it must not change while the
+    // graph is used.
+    static JunctionGraph build(BitGrid maze)
+    {
+        long[] open = maze.open;
+        int words = maze.stride >>> 6;
+
+        // the open cells that don't have exactly two open neighbours, a word at a time;
+        // the padding is closed, so the words either side of a row can be shifted in
+        long[] junction = new long[open.length];
+        int count = 0;
+        for (int w = words; w < open.length - words; w++)
+        {
+            long cells = open[w];
+            if (cells == 0)
+                continue;
+            long up = open[w - words], down = open[w + words];
+            long left = cells << 1 | open[w - 1] >>> 63;
+            long right = cells >>> 1 | open[w + 1] << 63;
+
+            // add the four neighbour bits: two is a sum of 0 with exactly one carry
+            long s1 = up ^ down, c1 = up & down;
+            long s2 = left ^ right, c2 = left & right;
+            long two = ~(s1 ^ s2) & (c1 ^ c2 ^ (s1 & s2));
+
+            junction[w] = cells & ~two;
+            count += Long.bitCount(junction[w]);
+        }
+
+        int[] nodes = new int[count];
+        int n = 0;
+        for (int w = 0; w < junction.length; w++)
+            for (long bits = junction[w]; bits != 0; bits &= bits - 1)
+                nodes[n++] = w << 6 | Long.numberOfTrailingZeros(bits);
+
+        // walk every corridor once, from whichever of its nodes comes first
+        int[] offset = { -maze.stride, -1, 1, maze.stride };
+        int[] to = new int[4 * count];
+        int[] length = new int[4 * count];
+        Arrays.fill(to, -2);
+        for (int u = 0; u < count; u++)
+        {
+            for (int k = 0; k < 4; k++)
+            {
+                int slot = 4 * u + k;
+                if (to[slot] != -2)
+                    continue;
+                int cell = nodes[u] + offset[k];
+                if (!maze.isOpen(cell)) {
+                    to[slot] = -1;
+                    continue;
+                }
+
+                int dir = k, steps = 1;
+                while ((junction[cell >>> 6] & (1L << cell)) == 0) {
+                    dir = next(open, offset, cell, dir);
+                    cell += offset[dir];
+                    steps++;
+                }
+
+                int v = Arrays.binarySearch(nodes, cell);
+                int back = 4 * v + 3 - dir;
+                if (v == u) {
+                    // a loop back to the same node is never on a shortest route
+                    to[slot] = to[back] = -1;
+                } else {
+                    to[slot] = v;
+                    length[slot] = steps;
+                    to[back] = u;
+                    length[back] = steps;
+                }
+            }
+        }
+
+        return new JunctionGraph(maze, nodes, to, length, peel(to, count));
+    }
+
+    // Peels off the nodes with at most one edge until only cycles are left, returning up
+    private static int[] peel(int[] to, int count)
+    {
+        // -1 for a node not peeled yet, -2 for one waiting to be
+        int[] up = new int[count];
+        int[] degree = new int[count];
+        IntQueue q = new IntQueue(1024);
+        for (int u = 0; u < count; u++) {
+            for (int k = 0; k < 4; k++)
+                if (to[4 * u + k] >= 0)
+                    degree[u]++;
+            up[u] = degree[u] <= 1 ? -2 : -1;
+            if (degree[u] <= 1)
+                q.add(u);
+        }
+
+        while (!q.isEmpty())
+        {
+            int u = q.poll();
+            up[u] = u;
+            for (int k = 0; k < 4; k++)
+            {
+                int v = to[4 * u + k];
+                if (v < 0 || up[v] >= 0)
+                    continue;
+
+                // the one edge left leads to v
+                up[u] = v;
+                if (up[v] == -1 && --degree[v] <= 1) {
+                    up[v] = -2;
+                    q.add(v);
+                }
+            }
+        }
+        return up;
+    }
+
+    // the direction a corridor goes on from cell, entered going dir
+    private static int next(long[] open, int[] offset, int cell, int dir)
+    {
+        for (int k = 0; k < 4; k++) {
+            int next = cell + offset[k];
+            if (k != 3 - dir && (open[next >>> 6] & (1L << next)) != 0)
+                return k;
+        }
+        throw new IllegalStateException("corridor ends at " + cell);
+    }
+
+    private boolean isJunction(int cell) {
+        return (junction[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    // Find the shortest route from (sx, sy) to (tx, ty).  Route cells are row-major
+    // (y * width + x).  Returns null if the destination can't be reached.  The route's
+    // expanded count is the number of nodes settled.
+    Route route(int sx, int sy, int tx, int ty)
+    {
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+        if (source == target)
+            return new Route(0, new int[] { maze.cell(source) });
+        if (!maze.isOpen(source) || !maze.isOpen(target))
+            return null;
+
+        directLength = Integer.MAX_VALUE;
+        int sides = attach(source, from, target);
+        int ends = attach(target, into, -1);
+        if (sides < 0 || ends < 0)
+            return GridSearch.solve(maze, sx, sy, tx, ty);
+
+        if (dist == null) {
+            dist = new int[nodes.length];
+            via = new int[nodes.length];
+            seen = new int[nodes.length];
+            allowed = new int[nodes.length];
+            heap = new long[64];
+        }
+        if (++generation == 0) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(allowed, 0);
+            generation = 1;
+        }
+        int g = generation;
+
+        // the peeled nodes between the ends and the core are the only ones that may be entered
+        for (int a = 0; a < sides; a++)
+            allow(from[3 * a], g);
+        for (int b = 0; b < ends; b++)
+            allow(into[3 * b], g);
+
+        heapSize = 0;
+        for (int a = 0; a < sides; a++) {
+            int u = from[3 * a], d = from[3 * a + 1];
+            if (seen[u] != g || d < dist[u]) {
+                seen[u] = g;
+                dist[u] = d;
+                via[u] = -1 - a;
+                push(d, u);
+            }
+        }
+
+        int best = directLength, end = -1;
+        int settled = 0;
+        while (heapSize > 0)
+        {
+            long entry = pop();
+            int d = (int) (entry >>> 32);
+            int u = (int) entry;
+            if (d >= best)
+                break;
+            if (d > dist[u])
+                continue;
+            settled++;
+
+            for (int b = 0; b < ends; b++)
+                if (into[3 * b] == u && d + into[3 * b + 1] < best) {
+                    best = d + into[3 * b + 1];
+                    end = b;
+                }
+
+            for (int k = 0; k < 4; k++)
+            {
+                int slot = 4 * u + k;
+                int v = to[slot];
+                if (v < 0 || up[v] >= 0 && allowed[v] != g)
+                    continue;
+                int nd = d + length[slot];
+                if (seen[v] != g || nd < dist[v]) {
+                    seen[v] = g;
+                    dist[v] = nd;
+                    via[v] = slot;
+                    push(nd, v);
+                }
+            }
+        }
+
+        if (best == Integer.MAX_VALUE)
+            return null;
+
+        int[] cells = new int[best + 1];
+        if (end < 0) {
+            walk(source, directDir, best, cells, 0, 1);
+        } else {
+            // the corridor into the target, filled in backwards from the end
+            int u = into[3 * end];
+            int at = best - into[3 * end + 1];
+            walk(target, into[3 * end + 2], into[3 * end + 1], cells, best, -1);
+
+            // the edges back to the node the source was attached to
+            while (via[u] >= 0) {
+                int slot = via[u];
+                at -= length[slot];
+                walk(nodes[slot >>> 2], slot & 3, length[slot], cells, at, 1);
+                u = slot >>> 2;
+            }
+
+            // and the corridor from the source
+            int a = -1 - via[u];
+            walk(source, from[3 * a + 2], from[3 * a + 1], cells, 0, 1);
+        }
+
+        Route route = new Route(best, cells);
+        route.expanded = settled;
+        return route;
+    }
+
+    // Finds the nodes an end of a query is attached to, as { node, distance, direction }
+    // for each side, and returns the number of sides, or -1 if the end is on a ring
+    // without nodes.  Walking from the source also notes a route straight to the target.
+    private int attach(int cell, int[] sides, int target)
+    {
+        if (isJunction(cell)) {
+            sides[0] = Arrays.binarySearch(nodes, cell);
+            sides[1] = 0;
+            return 1;
+        }
+
+        int n = 0;
+        for (int k = 0; k < 4; k++)
+        {
+            if (!maze.isOpen(cell + offset[k]))
+                continue;
+
+            int at = cell + offset[k], dir = k, steps = 1;
+            while (!isJunction(at)) {
+                if (at == cell)
+                    return -1;
+                if (at == target && steps < directLength) {
+                    directLength = steps;
+                    directDir = k;
+                }
+                dir = next(maze.open, offset, at, dir);
+                at += offset[dir];
+                steps++;
+            }
+            sides[3 * n] = Arrays.binarySearch(nodes, at);
+            sides[3 * n + 1] = steps;
+            sides[3 * n + 2] = k;
+            n++;
+        }
+        return n;
+    }
+
+    // Allows a query to enter a peeled node and the ones up from it
+    private void allow(int u, int g)
+    {
+        while (up[u] >= 0 && allowed[u] != g) {
+            allowed[u] = g;
+            if (up[u] == u)
+                break;
+            u = up[u];
+        }
+    }
+
+    // Follows a corridor for steps moves from cell, leaving direction k, storing the row-major
+    // numbers of the steps + 1 cells passed in cells[at], cells[at + dir], cells[at + 2*dir], ...
+    private void walk(int cell, int k, int steps, int[] cells, int at, int dir)
+    {
+        cells[at] = maze.cell(cell);
+        for (int step = 1; step <= steps; step++) {
+            if (step > 1)
+                k = next(maze.open, offset, cell, k);
+            cell += offset[k];
+            cells[at += dir] = maze.cell(cell);
+        }
+    }
+
+    // the heap of (distance << 32 | node) entries, smallest first
+    private void push(int d, int u)
+    {
+        if (heapSize == heap.length)
+            heap = Arrays.copyOf(heap, heapSize << 1);
+        long entry = (long) d << 32 | u;
+        int i = heapSize++;
+        while (i > 0 && heap[(i - 1) >>> 1] > entry) {
+            heap[i] = heap[(i - 1) >>> 1];
+            i = (i - 1) >>> 1;
+        }
+        heap[i] = entry;
+    }
+
+    private long pop()
+    {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        for (int child; (child = 2 * i + 1) < heapSize; i = child) {
+            if (child + 1 < heapSize && heap[child + 1] < heap[child])
+                child++;
+            if (heap[child] >= last)
+                break;
+            heap[i] = heap[child];
+        }
+        heap[i] = last;
+        return top;
+    }
+
+    int nodeCount() {
+        return nodes.length;
+    }
+
+    // number of corridors between two different nodes
+    int edgeCount() {
+        int slots = 0;
+        for (int v : to)
+            if (v >= 0)
+                slots++;
+        return slots / 2;
+    }
+
+    // number of nodes left after peeling
+    int coreCount() {
+        int core = 0;
+        for (int u : up)
+            if (u == -1)
+                core++;
+        return core;
+    }
+
+    // heap used by the graph, not counting the maze or the query state
+    long sizeInBytes() {
+        return 40L * nodes.length + 8L * junction.length;
+    }
+
+    // Writes the graph at position at of a channel as little endian ints: the number
+    // of nodes, then nodes, to, length and up.  Returns the position after it.
+    long write(FileChannel channel, long at) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(nodes.length).flip();
+        while (buffer.hasRemaining())
+            at += channel.write(buffer, at);
+        for (int[] ints : new int[][] { nodes, to, length, up }) {
+            for (int k = 0; k < ints.length; ) {
+                buffer.clear();
+                int n = Math.min(ints.length - k, buffer.capacity() >> 2);
+                buffer.asIntBuffer().put(ints, k, n);
+                buffer.limit(n << 2);
+                while (buffer.hasRemaining())
+                    at += channel.write(buffer, at);
+                k += n;
+            }
+        }
+        return at;
+    }
+
+    // Reads a graph of a maze written by write
+    static JunctionGraph read(BitGrid maze, IntBuffer in)
+    {
+        int count = in.get();
+        int[] nodes = new int[count], to = new int[4 * count], length = new int[4 * count], up = new int[count];
+        in.get(nodes).get(to).get(length).get(up);
+        return new JunctionGraph(maze, nodes, to, length, up);
+    }
+}
@@ -1,8 +1,8 @@
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.Queue;
 import java.io.File;
-import javax.imageio.ImageIO;
 
 import java.util.*;
 
@@ -70,7 +70,7 @@ class Main
 
     // Find Shortest Possible Route in a matrix mat from source
     // cell (i, j) to destination cell (x, y)
-    private static int[][] BFS(int mat[][], int i, int j, int x, int y, int M, int N)
+    static int[][] BFS(int mat[][], int i, int j, int x, int y, int M, int N)
     {
         // construct a matrix to keep track of visited cells
         boolean[][] visited = new boolean[M][N];
@@ -147,7 +147,9 @@ class Main
 
     // Find Shortest Possible Route in a matrix mat from source
     // cell (i, j) to destination cell (x, y)
-    private static Map<String, Node> BFS(int mat[][], int i, int j, int x, int y, int M, int N, int foo)
+    // Builds a String for every cell it reaches, kept only to compare against
+    // BFSParents in Benchmark
+    static Map<String, Node> BFS(int mat[][], int i, int j, int x, int y, int M, int N, int foo)
     {
         // construct a matrix to keep track of visited cells
         boolean[][] visited = new boolean[M][N];
@@ -199,7 +201,117 @@ class Main
         return closed;
     }
 
-    private static int endDist(int mat[][], int i, int j, int x, int y, int M, int N)
+    // Floods the whole matrix from source cell (i, j) like BFS(..., foo), but records the
+    // parent of every cell reached in a primitive array instead of a map of strings:
+    // parent[i * N + j] is the row-major index of the cell (i, j) was reached from, the
+    // source is its own parent and cells that weren't reached are -1.  The destination
+    // (x, y) is ignored, as it is by BFS(..., foo).
+    static int[] BFSParents(int mat[][], int i, int j, int x, int y, int M, int N)
+    {
+        int[] parent = new int[M * N];
+        Arrays.fill(parent, -1);
+
+        // a cell is visited once it has a parent
+        IntQueue q = new IntQueue(M + N);
+        parent[i * N + j] = i * N + j;
+        q.add(i * N + j);
+
+        while (!q.isEmpty())
+        {
+            int cell = q.poll();
+            int ci = cell / N;
+            int cj = cell - ci * N;
+
+            for (int k = 0; k < 4; k++)
+            {
+                int nextI = ci + row[k];
+                int nextJ = cj + col[k];
+                if (nextI < 0 || nextI >= M || nextJ < 0 || nextJ >= N)
+                    continue;
+
+                int next = nextI * N + nextJ;
+                if (parent[next] >= 0 || mat[nextI][nextJ] != 1)
+                    continue;
+
+                parent[next] = cell;
+                q.add(next);
+            }
+        }
+
+        return parent;
+    }
+
+    // Find the shortest route from source cell (i, j) to destination cell (x, y)
+    // with a single wave expansion. Instead of a second search, every cell
+    // records the direction (an index into row[]/col[]) it was reached from,
+    // packed 2 bits per cell, and the route is read back from the target.
+    // Returns null if the destination can't be reached.
+    static Route solve(int mat[][], int i, int j, int x, int y, int M, int N)
+    {
+        // construct a matrix to keep track of visited cells
+        boolean[][] visited = new boolean[M][N];
+
+        // 2-bit parent direction per cell, four cells to a byte
+        byte[] parent = new byte[(M * N + 3) >> 2];
+
+        // create an empty queue
+        Queue<Node> q = new ArrayDeque<>();
+
+        // mark source cell as visited and enqueue the source node
+        visited[i][j] = true;
+        q.add(new Node(i, j, 0, true));
+
+        int min_dist = -1;
+
+        // run till queue is not empty
+        while (!q.isEmpty())
+        {
+            Node node = q.poll();
+
+            // if destination is found, record its distance and stop
+            if (node.x == x && node.y == y) {
+                min_dist = node.dist;
+                break;
+            }
+
+            // check for all 4 possible movements from current cell
+            // and enqueue each valid movement
+            for (int k = 0; k < 4; k++)
+            {
+                int nextI = node.x + row[k];
+                int nextJ = node.y + col[k];
+
+                if (isValid(mat, visited, nextI, nextJ, M, N))
+                {
+                    // mark next cell as visited, remember how we got there and enqueue it
+                    visited[nextI][nextJ] = true;
+                    int cell = nextI * N + nextJ;
+                    parent[cell >> 2] |= k << ((cell & 3) << 1);
+                    q.add(new Node(nextI, nextJ, node.dist + 1, false));
+                }
+            }
+        }
+
+        if (min_dist < 0)
+            return null;
+
+        // Backtrace: walk the parent directions from the target to the source
+        int[] cells = new int[min_dist + 1];
+        int ci = x, cj = y;
+        for (int step = min_dist; step > 0; step--)
+        {
+            int cell = ci * N + cj;
+            cells[step] = cell;
+            int k = (parent[cell >> 2] >> ((cell & 3) << 1)) & 3;
+            ci -= row[k];
+            cj -= col[k];
+        }
+        cells[0] = ci * N + cj;
+
+        return new Route(min_dist, cells);
+    }
+
+    static int endDist(int mat[][], int i, int j, int x, int y, int M, int N)
     {
         // construct a matrix to keep track of visited cells
         boolean[][] visited = new boolean[M][N];
@@ -259,82 +371,505 @@ class Main
     }
 
 
-    // Shortest path in a Maze
-    public static void main(String[] args) throws IOException
+    // Locates an image (or maze file) in the examples directory, adding the .png extension
+    // if it is missing
+    static File exampleFile(String imageName)
     {
-       String imageName = "perfect2k";
-
-        if(imageName.charAt(imageName.length()-4) != '.')
+        if(imageName.indexOf('.') < 0)
             imageName = imageName + ".png";
 
-        File file;
         String address = System.getProperty("user.dir");
         if(address.charAt(0) == '/')
-            file = new File((System.getProperty("user.dir")) + "/examples/" + imageName);
+            return new File((System.getProperty("user.dir")) + "/examples/" + imageName);
         else
-            file = new File((System.getProperty("user.dir")) + "\\examples\\" + imageName);
+            return new File((System.getProperty("user.dir")) + "\\examples\\" + imageName);
+    }
+
+    // Loads a black and white maze image as a matrix of 1 (open) and 0 (wall)
+    static int[][] readMaze(File file) throws IOException
+    {
         EasyBufferedImage image = EasyBufferedImage.createImage(file);
-        System.out.println("File Size in bytes "+file.length());
 
         int[][] maze = image.getPixels2D(1);
-        int M = maze.length;
-        int N = maze.length;
 
         for(int i = 0; i < maze.length; i++)
-            for(int j = 0; j < maze.length; j++)
+            for(int j = 0; j < maze[i].length; j++)
                 if(maze[i][j] == 255)
                     maze[i][j] =1;
 
-        System.out.println("\nFinding the length to the shortest possible path...");
-        int maxDist = endDist(maze, 0, 0, maze.length-1, maze.length-1, M, N);
+        return maze;
+    }
 
-        long runTime = System.currentTimeMillis();
+    // Solves a maze with OutOfCoreSearch between the endpoints { sx, sy, tx, ty }, or the
+    // default ones if ends is null, and writes solution.png a row at a time
+    static void solveOutOfCore(File file, int[] ends) throws IOException
+    {
+        if (ends == OPENINGS)
+            throw new IllegalArgumentException("the openings of a maze are only found in memory, give sx sy tx ty");
+
+        try (OutOfCoreSearch search = OutOfCoreSearch.open(file, null))
+        {
+            System.out.println("\nFinding the shortest possible path out of core...");
+            long runTime = System.currentTimeMillis();
+
+            // unless they are given, a maze file says where to start and finish and an
+            // image goes corner to corner
+            if (ends == null && MazeFile.isMazeFile(file)) {
+                try (MazeFile maze = MazeFile.open(file)) {
+                    ends = new int[] { maze.sx, maze.sy, maze.tx, maze.ty };
+                }
+            }
+            if (ends == null)
+                ends = new int[] { 0, 0, search.width-1, search.height-1 };
+            checkEnds(ends, search.width, search.height);
+
+            Route route = search.solve(ends[0], ends[1], ends[2], ends[3]);
+            if (route == null) {
+                System.out.println("Destination can't be reached from given source");
+                return;
+            }
 
-        if (maxDist >= 0) {
             System.out.print("The shortest path from start to finish " +
-                    "has length of " + maxDist + " pixels.");
+                    "has length of " + route.length + " pixels.");
+            System.out.print("\nThe run time to find and record the path took approximately ");
+            System.out.println((System.currentTimeMillis()-runTime)/1000 + " seconds.");
 
-            System.out.println("\n\nMapping the actual route...");
+            System.out.println("\nConverting to image, please wait...\n");
 
-            // Uncomment to see a version of the code that uses hash maps
-            //Map<String, Node> shortestRoute = BFS(maze, 0, 0, maze.length-1, maze.length-1, M, N, 0);
-            //convertPath(M, N, shortestRoute, maze);
+            // written a row at a time from the packed maze file
+            String name = "solution.png";
+            search.write(route, new File(name), SolutionWriter.DEFAULT_LEVEL);
 
-            // Uncomment to see a version of this version of the code activated for solving the path
-            maze = BFS(maze, 0, 0, maze.length-1, maze.length-1, M, N);
+            System.out.print("File highlighting the shortest path can be found at:");
+            System.out.print(System.getProperty("user.dir") + "/" + name);
+        }
+    }
 
+    // Routes the nets given as sx sy tx ty ... one after the other with a NetRouter and
+    // writes solution.png with all of their paths
+    static void routeNets(File file, String[] coords) throws IOException
+    {
+        BitGrid grid = readGrid(file);
 
-            System.out.print("\nThe run time to record the path took approximately ");
-            System.out.println((System.currentTimeMillis()-runTime)/1000 + " seconds.");
+        // without coordinates a single net runs corner to corner
+        int[][] nets = new int[Math.max(1, coords.length / 4)][];
+        for (int n = 0; n < nets.length; n++)
+            nets[n] = coords.length < 4 ? new int[] { 0, 0, grid.width-1, grid.height-1 }
+                    : new int[] { Integer.parseInt(coords[4*n]), Integer.parseInt(coords[4*n+1]),
+                                  Integer.parseInt(coords[4*n+2]), Integer.parseInt(coords[4*n+3]) };
 
-            System.out.print("\nThe actual path is currently stored as a 2D array");
-            System.out.print(" and can be converted to an image, but this can take more than a minute");
-            System.out.print(" depending on the size of the array.");
+        System.out.println("\nRouting " + nets.length + " nets...");
+        long runTime = System.currentTimeMillis();
 
-            System.out.println("\n\nConverting to image, please wait...\n");
+        NetRouter router = new NetRouter(grid);
+        Route[] routes = router.routeAll(nets);
+
+        int routed = 0;
+        long length = 0;
+        for (int n = 0; n < nets.length; n++) {
+            int[] net = nets[n];
+            System.out.print("Net " + n + " (" + net[0] + "," + net[1] + ") to (" + net[2] + "," + net[3] + "): ");
+            if (routes[n] == null) {
+                System.out.println("can't be routed");
+                continue;
+            }
+            System.out.println("length " + routes[n].length + ", " + routes[n].expanded + " cells expanded");
+            routed++;
+            length += routes[n].length;
+        }
+        System.out.print(routed + " of " + nets.length + " nets routed with a total length of " + length + " pixels.");
+        System.out.print("\nThe run time to route the nets took approximately ");
+        System.out.println((System.currentTimeMillis()-runTime)/1000 + " seconds.");
 
-            for(int i = 0; i < maze.length; i++)
-                for(int j = 0; j < maze.length; j++)
-                    if(maze[i][j] == 1)
-                        maze[i][j] = 255;
+        System.out.println("\nConverting to image, please wait...\n");
 
+        BufferedImage image = SolutionWriter.render(grid, null);
+        for (Route route : routes)
+            if (route != null)
+                SolutionWriter.paint(image, route.cells, SolutionWriter.PATH);
+        String name = "solution.png";
+        SolutionWriter.write(image, new File(name), SolutionWriter.DEFAULT_LEVEL);
 
-            EasyBufferedImage bufferedImage = EasyBufferedImage.createImage(maze);
-            String name = "solution.png";
-            File myNewPNGFile = new File(name);
-            ImageIO.write(bufferedImage, "PNG", myNewPNGFile);
+        System.out.print("File highlighting the routed nets can be found at:");
+        System.out.println(System.getProperty("user.dir") + "/" + name);
+    }
 
-            System.out.print("File highlighting the shortest path can be found at:");
-            System.out.print(System.getProperty("user.dir") + "/" + name);
+    // Labels the components of a maze once and answers whether each pair of cells given
+    // as sx sy tx ty ... is connected, searching only for the pairs that are
+    static void reach(File file, String[] coords) throws IOException
+    {
+        BitGrid grid = readGrid(file);
+
+        System.out.println("\nLabelling the connected components...");
+        long start = System.nanoTime();
+        Components components = Components.label(grid);
+        System.out.printf("%d components labelled in %.1f ms%n", components.count(), (System.nanoTime() - start) / 1e6);
+
+        if (coords.length % 4 != 0)
+            throw new IllegalArgumentException("expected sx sy tx ty for each pair, got " + coords.length + " numbers");
+        for (int n = 0; n < coords.length; n += 4) {
+            int sx = Integer.parseInt(coords[n]), sy = Integer.parseInt(coords[n+1]);
+            int tx = Integer.parseInt(coords[n+2]), ty = Integer.parseInt(coords[n+3]);
+            checkEnds(new int[] { sx, sy, tx, ty }, grid.width, grid.height);
+            System.out.print("(" + sx + "," + sy + ") to (" + tx + "," + ty + "): ");
+            if (!components.connected(sx, sy, tx, ty)) {
+                System.out.println("can't be reached (components " + components.id(sx, sy) + " and " + components.id(tx, ty) + ")");
+                continue;
+            }
+            Route route = GridSearch.solve(grid, sx, sy, tx, ty);
+            System.out.println("length " + route.length + ", " + route.expanded + " cells expanded");
+        }
+    }
+
+    // Solves a maze with gray level costs (CostGrid, CostSearch) and writes solution.png.
+    // args are [threshold] [sx sy tx ty]; twoLevel makes white cells free and the other
+    // open cells cost 1.
+    static void solveWeighted(File file, boolean twoLevel, String[] args) throws IOException
+    {
+        if (args.length != 0 && args.length != 1 && args.length != 4 && args.length != 5)
+            throw new IllegalArgumentException("expected [threshold] [sx sy tx ty], got " + args.length + " arguments");
+        for (String arg : args)
+            if (arg.equalsIgnoreCase("auto"))
+                throw new IllegalArgumentException("auto endpoints are not supported with gray level costs, give sx sy tx ty");
+
+        int threshold = args.length % 4 == 1 ? Integer.parseInt(args[0]) : CostGrid.DEFAULT_THRESHOLD;
+        CostGrid grid = CostGrid.read(file, threshold, twoLevel);
+        int[] ends = args.length >= 4 ? endpoints(args, args.length - 4)
+                : new int[] { 0, 0, grid.width-1, grid.height-1 };
+        checkEnds(ends, grid.width, grid.height);
+
+        System.out.println("\nFinding the cheapest possible path (costs up to " + grid.maxCost + ")...");
+        long runTime = System.currentTimeMillis();
+        Route route = CostSearch.solve(grid, ends[0], ends[1], ends[2], ends[3]);
+        if (route == null) {
+            System.out.println("Destination can't be reached from given source");
+            return;
+        }
+
+        System.out.print("The cheapest path from start to finish costs " + route.cost
+                + " and has length of " + route.length + " pixels.");
+        System.out.print("\nThe " + (grid.maxCost <= 1 ? "0-1 BFS" : "bucket queue") + " search expanded "
+                + route.expanded + " cells.");
+        System.out.print("\nThe run time to find and record the path took approximately ");
+        System.out.println((System.currentTimeMillis()-runTime)/1000 + " seconds.");
+
+        BufferedImage image = SolutionWriter.render(grid.toBitGrid(), route);
+        String name = "solution.png";
+        SolutionWriter.write(image, new File(name), SolutionWriter.DEFAULT_LEVEL);
+
+        System.out.print("File highlighting the cheapest path can be found at:");
+        System.out.println(System.getProperty("user.dir") + "/" + name);
+    }
+
+    // Solves a maze with the moves of a stencil (Stencil, StencilSearch) between the
+    // endpoints { sx, sy, tx, ty }, OPENINGS or the corners if ends is null, and writes
+    // solution.png
+    static void solveStencil(File file, Stencil stencil, int[] ends) throws IOException
+    {
+        BitGrid grid = readGrid(file);
+        if (ends == OPENINGS)
+            ends = openings(grid);
+        if (ends == null)
+            ends = new int[] { 0, 0, grid.width-1, grid.height-1 };
+        checkEnds(ends, grid.width, grid.height);
+
+        System.out.println("\nFinding the shortest possible path with " + stencil + " moves...");
+        long runTime = System.currentTimeMillis();
+        Route route = stencil.solve(grid, ends[0], ends[1], ends[2], ends[3]);
+        if (route == null) {
+            System.out.println("Destination can't be reached from given source");
+            return;
+        }
+
+        System.out.print("The shortest path from start (" + ends[0] + "," + ends[1] + ") to finish ("
+                + ends[2] + "," + ends[3] + ") takes " + route.length + " steps");
+        if (stencil == Stencil.OCTILE)
+            System.out.printf(" and has length of %.1f pixels", (double) route.cost / StencilSearch.STRAIGHT);
+        System.out.print(".\nThe search expanded " + route.expanded + " cells.");
+        System.out.print("\nThe run time to find and record the path took approximately ");
+        System.out.println((System.currentTimeMillis()-runTime)/1000 + " seconds.");
+
+        BufferedImage image = SolutionWriter.render(grid, route);
+        String name = "solution.png";
+        SolutionWriter.write(image, new File(name), SolutionWriter.DEFAULT_LEVEL);
+
+        System.out.print("File highlighting the shortest path can be found at:");
+        System.out.println(System.getProperty("user.dir") + "/" + name);
+    }
+
+    // Solves a maze from corner to corner with a DynamicSearch, toggles the cells given as
+    // x y ... (walls become open and open cells walls) and repairs the route, comparing the
+    // repair with searching the edited maze again, then writes solution.png
+    static void solveEdited(File file, String[] coords) throws IOException
+    {
+        BitGrid grid = readGrid(file);
+
+        // check all the cells before the first search, not halfway through the edits
+        if (coords.length % 2 != 0)
+            throw new IllegalArgumentException("expected x y pairs of cells to toggle, got " + coords.length + " numbers");
+        int[] cells = new int[coords.length];
+        for (int n = 0; n < coords.length; n += 2) {
+            cells[n] = Integer.parseInt(coords[n]);
+            cells[n+1] = Integer.parseInt(coords[n+1]);
+            if (cells[n] < 0 || cells[n] >= grid.width || cells[n+1] < 0 || cells[n+1] >= grid.height)
+                throw new IllegalArgumentException("cell (" + cells[n] + ", " + cells[n+1] + ") is outside the "
+                        + grid.width + "x" + grid.height + " maze");
+        }
+
+        System.out.println("\nFinding the shortest possible path...");
+        long start = System.nanoTime();
+        DynamicSearch search = new DynamicSearch(grid, 0, 0, grid.width-1, grid.height-1);
+        Route route = search.route();
+        System.out.printf("%s in %.1f ms, %d cells settled%n", route == null ? "No path"
+                : "Length " + route.length, (System.nanoTime() - start) / 1e6, route == null ? 0 : route.expanded);
+
+        for (int n = 0; n < cells.length; n += 2)
+            search.toggle(cells[n], cells[n+1]);
+        System.out.println("\nRepairing it after toggling " + cells.length / 2 + " cells...");
+        start = System.nanoTime();
+        route = search.route();
+        System.out.printf("%s in %.1f ms, %d cells settled%n", route == null ? "No path"
+                : "Length " + route.length, (System.nanoTime() - start) / 1e6, route == null ? 0 : route.expanded);
+
+        start = System.nanoTime();
+        Route fresh = GridSearch.solve(grid, 0, 0, grid.width-1, grid.height-1);
+        System.out.printf("Searching the edited maze again (GridSearch): %s in %.1f ms%n",
+                fresh == null ? "no path" : "length " + fresh.length, (System.nanoTime() - start) / 1e6);
+        if (route == null)
+            return;
+
+        BufferedImage image = SolutionWriter.render(grid, route);
+        String name = "solution.png";
+        SolutionWriter.write(image, new File(name), SolutionWriter.DEFAULT_LEVEL);
+
+        System.out.print("\nFile highlighting the shortest path can be found at:");
+        System.out.println(System.getProperty("user.dir") + "/" + name);
+    }
+
+    // Reads a maze image or maze file into a packed grid
+    static BitGrid readGrid(File file) throws IOException
+    {
+        if (!MazeFile.isMazeFile(file))
+            return PngMazeReader.read(file);
+        try (MazeFile mazeFile = MazeFile.open(file)) {
+            return mazeFile.toGrid();
+        }
+    }
+
+    // the solver named in the stats of a route read from a maze file's cached tree
+    static final String CACHED = "cached tree";
+
+    // Solves a maze image or maze file from corner to corner (or between the endpoints
+    // in the maze file) and writes the solution to the solution file, unless it is null.
+    // Returns the route found (null if there is none) with the time of every phase.
+    static SolveStats solve(File file, Solver solver, File solution) throws IOException
+    {
+        return solve(file, solver, null, solution);
+    }
+
+    // pass as the endpoints of solve to go from the first to the last opening in the
+    // border of the maze
+    static final int[] OPENINGS = {};
+
+    // Solves a maze between the endpoints { sx, sy, tx, ty }, or the default ones if
+    // ends is null.  A route cached in a maze file is only used from its own source, and
+    // a junction graph cached in one is used by the JUNCTIONS solver.
+    static SolveStats solve(File file, Solver solver, int[] ends, File solution) throws IOException
+    {
+        // a maze file with a cached search tree already knows the route
+        MazeFile mazeFile = MazeFile.isMazeFile(file) ? MazeFile.open(file) : null;
+        boolean cached = mazeFile != null && mazeFile.hasTree()
+                && (ends == null || ends != OPENINGS && ends[0] == mazeFile.sx && ends[1] == mazeFile.sy);
+        SolveStats stats = new SolveStats(file.getName(), cached ? CACHED : solver.toString());
+
+        try {
+            // the maze is decoded straight into a packed grid, one bit per cell, or copied
+            // from the mapped body of a maze file, which also says where to start and finish
+            stats.begin(SolveStats.Phase.LOAD);
+            BitGrid grid = mazeFile != null ? mazeFile.toGrid() : PngMazeReader.read(file);
+            stats.width = grid.width;
+            stats.height = grid.height;
+            if (ends == OPENINGS)
+                ends = openings(grid);
+            if (ends == null)
+                ends = mazeFile != null
+                        ? new int[] { mazeFile.sx, mazeFile.sy, mazeFile.tx, mazeFile.ty }
+                        : new int[] { 0, 0, grid.width-1, grid.height-1 };
+            checkEnds(ends, grid.width, grid.height);
+            stats.ends = ends;
+            JunctionGraph graph = !cached && solver == Solver.JUNCTIONS && mazeFile != null
+                    ? mazeFile.graph(grid) : null;
+
+            stats.begin(SolveStats.Phase.SEARCH);
+            Route route = cached ? mazeFile.route(ends[2], ends[3])
+                    : graph != null ? graph.route(ends[0], ends[1], ends[2], ends[3])
+                    : solver.solve(grid, ends[0], ends[1], ends[2], ends[3]);
+            stats.route = route;
+
+            if (route != null && solution != null) {
+                // only the route is painted, over a 2 bit copy of the maze
+                stats.begin(SolveStats.Phase.CONVERT);
+                BufferedImage image = SolutionWriter.render(grid, null);
+                stats.begin(SolveStats.Phase.MARK);
+                SolutionWriter.paint(image, route.cells, SolutionWriter.PATH);
+                stats.begin(SolveStats.Phase.WRITE);
+                SolutionWriter.write(image, solution, SolutionWriter.DEFAULT_LEVEL);
+            }
+        } finally {
+            if (mazeFile != null)
+                mazeFile.close();
+            stats.finish();
+        }
+        return stats;
+    }
+
+    // The first and last openings in the border of a maze as { sx, sy, tx, ty }, or
+    // null (the corners) if it has fewer than two
+    static int[] openings(BitGrid grid)
+    {
+        int[] openings = grid.openings();
+        if (openings.length < 2)
+            return null;
+        int first = openings[0], last = openings[openings.length - 1];
+        return new int[] { grid.x(first), grid.y(first), grid.x(last), grid.y(last) };
+    }
+
+    // Refuses endpoints { sx, sy, tx, ty } that are not all cells of a width x height maze,
+    // which the packed grids would otherwise wrap into the next row or read past the end of
+    static void checkEnds(int[] ends, int width, int height)
+    {
+        for (int k = 0; k < 4; k++)
+            if (ends[k] < 0 || ends[k] >= ((k & 1) == 0 ? width : height))
+                throw new IllegalArgumentException("endpoints outside the maze");
+    }
+
+    // The endpoints given on the command line from args[at]: sx sy tx ty, "auto" for
+    // the openings in the border, or nothing for the default ones (null)
+    static int[] endpoints(String[] args, int at)
+    {
+        if (args.length <= at)
+            return null;
+        if (args[at].equalsIgnoreCase("auto"))
+            return OPENINGS;
+        if (args.length < at + 4)
+            throw new IllegalArgumentException("expected sx sy tx ty or auto after the solver");
+        int[] ends = new int[4];
+        for (int k = 0; k < 4; k++)
+            ends[k] = Integer.parseInt(args[at + k]);
+        return ends;
+    }
+
+    // Shortest path in a Maze
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+       String imageName = args.length > 0 ? args[0] : "perfect2k";
+       String solverName = args.length > 1 ? args[1] : "lee";
+
+        // many mazes in one run:  batch directory|manifest [solver] [threads] [budget MB] [output]
+        if (imageName.equals("batch")) {
+            Batch.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        File file = exampleFile(imageName);
+        System.out.println("File Size in bytes "+file.length());
+
+        // mazes too large for the heap are solved from memory mapped files
+        if (solverName.equalsIgnoreCase("outofcore")) {
+            solveOutOfCore(file, endpoints(args, 2));
+            return;
+        }
+        // several nets routed one after the other:  nets sx sy tx ty [sx sy tx ty ...]
+        if (solverName.equalsIgnoreCase("nets")) {
+            routeNets(file, Arrays.copyOfRange(args, 2, args.length));
+            return;
+        }
+        // gray levels as costs:  weighted [threshold] [sx sy tx ty], or zeroone for two levels
+        if (solverName.equalsIgnoreCase("weighted") || solverName.equalsIgnoreCase("zeroone")) {
+            solveWeighted(file, solverName.equalsIgnoreCase("zeroone"), Arrays.copyOfRange(args, 2, args.length));
+            return;
+        }
+        // other moves than Lee's four:  stencil four|eight|eight_strict|octile [sx sy tx ty|auto]
+        if (solverName.equalsIgnoreCase("stencil")) {
+            Stencil stencil = Stencil.valueOf((args.length > 2 ? args[2] : "four").toUpperCase());
+            solveStencil(file, stencil, endpoints(args, 3));
+            return;
+        }
+        // the route repaired after toggling cells:  edit x y [x y ...]
+        if (solverName.equalsIgnoreCase("edit")) {
+            solveEdited(file, Arrays.copyOfRange(args, 2, args.length));
+            return;
+        }
+        // which pairs of cells are connected, from the component labels:  reach sx sy tx ty [...]
+        if (solverName.equalsIgnoreCase("reach")) {
+            reach(file, Arrays.copyOfRange(args, 2, args.length));
+            return;
+        }
+        Solver solver = Solver.valueOf(solverName.toUpperCase());
+
+        System.out.println("\nFinding the shortest possible path...");
+        long runTime = System.currentTimeMillis();
+
+        String name = "solution.png";
+        SolveStats stats = solve(file, solver, endpoints(args, 2), new File(name));
+        Route route = stats.route;
+
+        if (route != null) {
+            int[] ends = stats.ends;
+            System.out.print("The shortest path from start (" + ends[0] + "," + ends[1] + ") to finish ("
+                    + ends[2] + "," + ends[3] + ") has length of " + route.length + " pixels.");
+            if (stats.solver.equals(CACHED))
+                System.out.print("\nThe route was read from the search tree cached in the maze file.");
+            else if (solver == Solver.JUNCTIONS)
+                System.out.print("\nThe " + solver + " search settled " + route.expanded + " junctions and dead ends.");
+            else
+                System.out.print("\nThe " + solver + " search expanded " + route.expanded + " cells.");
+
+            // Uncomment to see a version of the code that floods the whole maze and records
+            // every parent (BFS(..., 0) does the same with a map of strings)
+            //int[][] maze = readMaze(file);
+            //int M = maze.length, N = maze[0].length;
+            //int[] parent = BFSParents(maze, 0, 0, M-1, N-1, M, N);
+            //convertPath(M, N, parent, maze);
+
+            // Uncomment to see the original two pass version (endDist followed by BFS)
+            //int[][] maze = readMaze(file);
+            //maze = BFS(maze, 0, 0, maze.length-1, maze[0].length-1, maze.length, maze[0].length);
+
+            System.out.print("\nThe run time to find and record the path took approximately ");
+            System.out.println((System.currentTimeMillis()-runTime)/1000 + " seconds.");
+
+            System.out.print("\nFile highlighting the shortest path can be found at:");
+            System.out.println(System.getProperty("user.dir") + "/" + name);
         }
         else {
-            System.out.print("Destination can't be reached from given source");
+            System.out.println("Destination can't be reached from given source");
         }
 
+        System.out.println();
+        System.out.print(stats);
         System.out.println("\n\nFin~");
     }
 
 
+    // Marks the path recorded by BFSParents in mat with 128, like the map version below:
+    // from the parent of the parent of cell (M-1, N-1) back to the source.  Leaves mat
+    // as it is if (M-1, N-1) wasn't reached.
+    public static int [][] convertPath(int M, int N, int[] parent, int [][] mat ){
+
+        int [][] matRoute = mat;
+        int cell = parent[(M-1) * N + N-1];
+        if (cell < 0)
+            return matRoute;
+
+        while(parent[cell] != cell) {
+            cell = parent[cell];
+            matRoute[cell / N][cell % N] = 128;
+        }
+
+        return matRoute;
+    }
+
     public static int [][] convertPath(int M, int N, Map<String, Node> closed, int [][] mat ){
 
         int [][] matRoute = mat;
@@ -0,0 +1,114 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An array of longs kept in a memory mapped file and indexed by a long, for bit
+ * planes too large for the heap.
+ * <p>
+ * A single mapping can't be larger than 2 GB, so the file is mapped in segments of
+ * 2^27 words (1 GB).  Only the pages that are touched are read in, and the operating
+ * system writes dirty pages back and drops them as it needs the memory, so the
+ * resident size is whatever the page cache can spare rather than the size of the
+ * file.  The words are stored little endian.
+ */
+class MappedWords implements Closeable
+{
+    private static final int SEGMENT_BITS = 27;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+
+    // number of words
+    final long length;
+
+    private final RandomAccessFile file;
+    private final LongBuffer[] segments;
+
+    private MappedWords(RandomAccessFile file, long offset, long length, boolean writable) throws IOException {
+        this.file = file;
+        this.length = length;
+
+        FileChannel channel = file.getChannel();
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        segments = new LongBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS)];
+        for (int k = 0; k < segments.length; k++) {
+            long first = (long) k << SEGMENT_BITS;
+            long words = Math.min(1L << SEGMENT_BITS, length - first);
+            segments[k] = channel.map(mode, offset + (first << 3), words << 3).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        }
+    }
+
+    // Creates (or truncates) file to hold length words, all zero
+    static MappedWords create(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            raf.setLength(length << 3);
+            return new MappedWords(raf, 0, length, true);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    // Maps an existing file of words
+    static MappedWords open(File file, boolean writable) throws IOException {
+        return open(file, 0, file.length() >>> 3, writable);
+    }
+
+    // Maps length words of an existing file, starting offset bytes into it
+    static MappedWords open(File file, long offset, long length, boolean writable) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+        try {
+            if (offset + (length << 3) > raf.length())
+                throw new IOException(file + " is too short for " + length + " words at " + offset);
+            return new MappedWords(raf, offset, length, writable);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    long get(long index) {
+        return segments[(int) (index >>> SEGMENT_BITS)].get((int) index & SEGMENT_MASK);
+    }
+
+    void set(long index, long value) {
+        segments[(int) (index >>> SEGMENT_BITS)].put((int) index & SEGMENT_MASK, value);
+    }
+
+    // Copies n words starting at index into dst from dst[off]
+    void get(long index, long[] dst, int off, int n) {
+        while (n > 0) {
+            LongBuffer segment = segments[(int) (index >>> SEGMENT_BITS)].duplicate();
+            segment.position((int) index & SEGMENT_MASK);
+            int count = Math.min(n, segment.remaining());
+            segment.get(dst, off, count);
+            index += count;
+            off += count;
+            n -= count;
+        }
+    }
+
+    // Copies n words from src[off] into the file starting at index
+    void set(long index, long[] src, int off, int n) {
+        while (n > 0) {
+            LongBuffer segment = segments[(int) (index >>> SEGMENT_BITS)].duplicate();
+            segment.position((int) index & SEGMENT_MASK);
+            int count = Math.min(n, segment.remaining());
+            segment.put(src, off, count);
+            index += count;
+            off += count;
+            n -= count;
+        }
+    }
+
+    // Closes the file.  The mappings themselves are released when they are garbage
+    // collected, Java has no way to unmap them explicitly.
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A maze in a compact binary file that is memory mapped instead of decoded.
+ * <p>
+ * The file starts with a 64 byte little endian header:
+ * <pre>
+ *      0  "MAZE"         8  width        16  start x      24  target x     32  flags
+ *      4  version       12  height       20  start y      28  target y     36  route length
+ *     40  body offset (long)   48  tree offset (long, 0 if none)   56  graph offset (long, 0 if none)
+ * </pre>
+ * followed by the body, the open cells one bit each in exactly the layout of a
+ * BitGrid's open plane (rows padded to whole words, a closed row above and below),
+ * so loading it is one bulk copy of the mapped words, or no copy at all for
+ * OutOfCoreSearch, which maps the body where it is.
+ * <p>
+ * The body can be followed by a cached search tree from the start: three planes of
+ * the same layout holding the cells reached and the low and high bits of their
+ * 2-bit parent directions.  With the tree, the shortest route from the start to the
+ * target, or to any other cell, is read back in time proportional to its length
+ * without searching at all.  It stands in for a distance field: it takes 3 bits a
+ * cell rather than 32 and the distance to a cell is the length of its route.  The
+ * length of the route to the target is kept in the header (-1 if it can't be reached).
+ * <p>
+ * Last there can be the maze contracted to a JunctionGraph, so the junctions and
+ * corridors don't have to be found again for every run.
+ */
+class MazeFile implements Closeable
+{
+    static final String EXTENSION = ".maze";
+
+    private static final int MAGIC = 0x455A414D; // "MAZE" little endian
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+
+    // header flags
+    private static final int TREE = 1;
+    private static final int GRAPH = 2;
+
+    final int width, height;
+    final int sx, sy, tx, ty;
+
+    // length of the cached route from start to target, -1 if unreachable or not cached
+    final int routeLength;
+
+    final File file;
+
+    // bits of a row, words of a plane, and the bit index offsets of the 4 movements
+    private final long stride;
+    private final long planeWords;
+    private final long[] offset;
+
+    // the open cells, and the cached tree (reached, parent low, parent high) or null
+    private final MappedWords body, tree;
+
+    // where the cached JunctionGraph starts, 0 if there is none
+    private final long graphOffset;
+
+    private MazeFile(File file, ByteBuffer header) throws IOException {
+        this.file = file;
+        if (header.getInt(0) != MAGIC)
+            throw new IOException(file.getName() + " is not a maze file");
+        if (header.getInt(4) != VERSION)
+            throw new IOException(file.getName() + " has unsupported maze file version " + header.getInt(4));
+
+        width = header.getInt(8);
+        height = header.getInt(12);
+        sx = header.getInt(16);
+        sy = header.getInt(20);
+        tx = header.getInt(24);
+        ty = header.getInt(28);
+        int flags = header.getInt(32);
+        routeLength = header.getInt(36);
+
+        int words = (width >>> 6) + 1;
+        stride = (long) words << 6;
+        planeWords = (long) words * (height + 2);
+        offset = new long[] { -stride, -1, 1, stride };
+
+        body = MappedWords.open(file, header.getLong(40), planeWords, false);
+        if ((flags & TREE) != 0) {
+            try {
+                tree = MappedWords.open(file, header.getLong(48), 3 * planeWords, false);
+            } catch (IOException e) {
+                body.close();
+                throw e;
+            }
+        } else {
+            tree = null;
+        }
+        graphOffset = (flags & GRAPH) != 0 ? header.getLong(56) : 0;
+    }
+
+    // Whether a file looks like a maze file (by its name)
+    static boolean isMazeFile(File file) {
+        return file.getName().endsWith(EXTENSION);
+    }
+
+    // Opens and maps a maze file
+    static MazeFile open(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            while (header.hasRemaining())
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException(file.getName() + " is too short to be a maze file");
+        }
+        return new MazeFile(file, header);
+    }
+
+    // Reads a maze file straight into a BitGrid
+    BitGrid toGrid() {
+        BitGrid grid = new BitGrid(width, height);
+        body.get(0, grid.open, 0, grid.open.length);
+        return grid;
+    }
+
+    // the mapped open cells, laid out like BitGrid.open
+    MappedWords body() {
+        return body;
+    }
+
+    boolean hasTree() {
+        return tree != null;
+    }
+
+    boolean hasGraph() {
+        return graphOffset != 0;
+    }
+
+    // The cached JunctionGraph of the maze, read into the heap, or null if there is none.
+    // grid must be this maze, as read by toGrid.
+    JunctionGraph graph(BitGrid grid) throws IOException {
+        if (graphOffset == 0)
+            return null;
+        if (grid.width != width || grid.height != height)
+            throw new IllegalArgumentException("the grid is not the maze in " + file.getName());
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            IntBuffer ints = channel.map(FileChannel.MapMode.READ_ONLY, graphOffset, channel.size() - graphOffset)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            return JunctionGraph.read(grid, ints);
+        }
+    }
+
+    // The shortest route from the start to (x, y) read from the cached tree, or null if
+    // there is no tree or the cell can't be reached.  Route cells are row-major.
+    Route route(int x, int y) {
+        if (tree == null || x < 0 || x >= width || y < 0 || y >= height)
+            return null;
+
+        long source = (sy + 1) * stride + sx;
+        long target = (y + 1) * stride + x;
+        if ((tree.get(target >>> 6) & (1L << target)) == 0)
+            return null;
+
+        // count the steps, then fill them in from the end
+        int length = 0;
+        for (long cell = target; cell != source; cell = parent(cell))
+            length++;
+
+        int[] cells = new int[length + 1];
+        long cell = target;
+        for (int step = length; step > 0; step--) {
+            cells[step] = cell(cell);
+            cell = parent(cell);
+        }
+        cells[0] = cell(cell);
+
+        Route route = new Route(length, cells);
+        route.expanded = 0;
+        return route;
+    }
+
+    // the cell a cell of the tree was reached from
+    private long parent(long cell) {
+        long w = cell >>> 6;
+        int k = (int) ((tree.get(planeWords + w) >>> cell) & 1) | (int) (((tree.get(2 * planeWords + w) >>> cell) & 1) << 1);
+        return cell - offset[k];
+    }
+
+    // row-major cell number of a bit index
+    private int cell(long index) {
+        return (int) ((index / stride - 1) * width + index % stride);
+    }
+
+    public void close() throws IOException {
+        body.close();
+        if (tree != null)
+            tree.close();
+    }
+
+    // Writes a maze to a maze file with the given start and target, caching the search
+    // tree from the start if withTree is set and the junction graph if withGraph is.
+    static void write(File file, BitGrid maze, int sx, int sy, int tx, int ty, boolean withTree) throws IOException {
+        write(file, maze, sx, sy, tx, ty, withTree, false);
+    }
+
+    static void write(File file, BitGrid maze, int sx, int sy, int tx, int ty, boolean withTree,
+                      boolean withGraph) throws IOException {
+        JunctionGraph graph = withGraph ? JunctionGraph.build(maze) : null;
+
+        long[] reached = null, parentLo = null, parentHi = null;
+        int routeLength = -1;
+        if (withTree) {
+            parentLo = new long[maze.open.length];
+            parentHi = new long[maze.open.length];
+            GridSearch.flood(maze, sx, sy, parentLo, parentHi);
+            reached = maze.visited;
+
+            // the length of the route to the target is the number of steps back to the start
+            int[] offset = { -maze.stride, -1, 1, maze.stride };
+            int source = maze.index(sx, sy);
+            int cell = maze.index(tx, ty);
+            if (maze.isVisited(cell)) {
+                for (routeLength = 0; cell != source; routeLength++) {
+                    int w = cell >>> 6;
+                    cell -= offset[(int) ((parentLo[w] >>> cell) & 1) | (int) (((parentHi[w] >>> cell) & 1) << 1)];
+                }
+            }
+        }
+
+        long planeBytes = (long) maze.open.length << 3;
+        long treeOffset = withTree ? HEADER + planeBytes : 0;
+        long graphOffset = withGraph ? HEADER + (withTree ? 4 : 1) * planeBytes : 0;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION)
+                .putInt(maze.width).putInt(maze.height)
+                .putInt(sx).putInt(sy).putInt(tx).putInt(ty)
+                .putInt((withTree ? TREE : 0) | (withGraph ? GRAPH : 0)).putInt(routeLength)
+                .putLong(HEADER).putLong(treeOffset).putLong(graphOffset);
+        header.flip();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            long at = 0;
+            while (header.hasRemaining())
+                at += channel.write(header, at);
+            at = writeWords(channel, at, maze.open);
+            if (withTree) {
+                at = writeWords(channel, at, reached);
+                at = writeWords(channel, at, parentLo);
+                at = writeWords(channel, at, parentHi);
+            }
+            if (withGraph)
+                graph.write(channel, at);
+        }
+    }
+
+    private static long writeWords(FileChannel channel, long at, long[] words) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        for (int k = 0; k < words.length; ) {
+            buffer.clear();
+            int n = Math.min(words.length - k, buffer.capacity() >> 3);
+            buffer.asLongBuffer().put(words, k, n);
+            buffer.limit(n << 3);
+            while (buffer.hasRemaining())
+                at += channel.write(buffer, at);
+            k += n;
+        }
+        return at;
+    }
+
+    // Converts a maze image to a maze file:  java MazeFile maze.png [out.maze] [sx sy tx ty] [-tree] [-graph]
+    // The start and target default to the top left and bottom right corners.
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("usage: java MazeFile maze.png [out.maze] [sx sy tx ty] [-tree] [-graph]");
+            return;
+        }
+
+        File in = new File(args[0]);
+        boolean withTree = false, withGraph = false;
+        String out = null;
+        int[] ends = new int[4];
+        int n = 0;
+        for (int k = 1; k < args.length; k++) {
+            if (args[k].equals("-tree"))
+                withTree = true;
+            else if (args[k].equals("-graph"))
+                withGraph = true;
+            else if (out == null && args[k].endsWith(EXTENSION))
+                out = args[k];
+            else if (n < 4)
+                ends[n++] = Integer.parseInt(args[k]);
+        }
+        if (out == null) {
+            String name = in.getPath();
+            int dot = name.lastIndexOf('.');
+            out = (dot > name.lastIndexOf(File.separatorChar) ? name.substring(0, dot) : name) + EXTENSION;
+        }
+
+        BitGrid maze = PngMazeReader.read(in);
+        if (n < 4)
+            ends = new int[] { 0, 0, maze.width - 1, maze.height - 1 };
+        write(new File(out), maze, ends[0], ends[1], ends[2], ends[3], withTree, withGraph);
+        System.out.println("Wrote " + out + " (" + new File(out).length() + " bytes)");
+    }
+}
@@ -0,0 +1,244 @@
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Answers many route queries in the same maze from cached search trees.
+ * <p>
+ * The first query from a source floods the whole maze from it (GridSearch.flood)
+ * and keeps the resulting tree: the cells reached and their 2-bit parent
+ * directions, three bit planes the shape of the maze.  Every later query from the
+ * same source is answered by walking the parents back from the target, in time
+ * proportional to the length of the route rather than the size of the maze.  The
+ * tree stands in for a distance field: the distance to a cell is the number of
+ * steps back to the source, and it takes 3 bits a cell instead of 32.
+ * <p>
+ * Trees are kept in least recently used order, keyed by the maze (by identity)
+ * and the source, and the oldest are evicted once they take more than the budget
+ * given to the constructor.  A tree describes the maze as it was when it was
+ * flooded, so after changing a maze call invalidate.  Searching uses the maze's
+ * visited plane, so a router, like a BitGrid, must not be shared between threads.
+ * <p>
+ * The first query in a maze also labels its connected components (Components), so
+ * a query whose ends are in different components returns at once instead of
+ * flooding and caching a tree that can't reach the target.  The labels are kept
+ * until the maze is invalidated and count towards the memory used, but they are
+ * never evicted.
+ */
+class MazeRouter
+{
+    // a maze by identity and a source bit index in it
+    private static final class Key
+    {
+        final BitGrid maze;
+        final int source;
+
+        Key(BitGrid maze, int source) {
+            this.maze = maze;
+            this.source = source;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).maze == maze && ((Key) o).source == source;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(maze) * 31 + source;
+        }
+    }
+
+    // the search tree flooded from a source
+    private static final class Tree
+    {
+        final int source;
+        final long[] reached, parentLo, parentHi;
+
+        // number of cells reached
+        final long cells;
+
+        Tree(int source, long[] reached, long[] parentLo, long[] parentHi, long cells) {
+            this.source = source;
+            this.reached = reached;
+            this.parentLo = parentLo;
+            this.parentHi = parentHi;
+            this.cells = cells;
+        }
+
+        long sizeInBytes() {
+            return 24L * reached.length;
+        }
+    }
+
+    private final long budget;
+    private final LinkedHashMap<Key, Tree> trees = new LinkedHashMap<>(16, 0.75f, true);
+    private final IdentityHashMap<BitGrid, Components> components = new IdentityHashMap<>();
+    private long memoryUsed;
+
+    private long hits, misses, evictions, unreachable;
+
+    // A router that keeps trees up to budget bytes in total, always keeping the latest
+    MazeRouter(long budget) {
+        if (budget < 0)
+            throw new IllegalArgumentException("negative cache budget " + budget);
+        this.budget = budget;
+    }
+
+    // Find the shortest route from (sx, sy) to (tx, ty).  Route cells are row-major
+    // (y * width + x).  Returns null if the destination can't be reached.  The route's
+    // expanded count is the number of cells flooded, 0 when the tree was cached.
+    Route route(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        if (!connected(maze, sx, sy, tx, ty))
+            return null;
+
+        int target = maze.index(tx, ty);
+        long flooded = misses;
+        Tree tree = tree(maze, sx, sy);
+        if (!isReached(tree, target))
+            return null;
+
+        int[] offset = { -maze.stride, -1, 1, maze.stride };
+        int dist = depth(tree, offset, target);
+        Route route = GridSearch.backtrace(maze, tree.parentLo, tree.parentHi, offset, target, dist);
+        route.expanded = misses == flooded ? 0 : (int) Math.min(tree.cells, Integer.MAX_VALUE);
+        return route;
+    }
+
+    // Length of the shortest route from (sx, sy) to (tx, ty), or -1 if there is none
+    int distance(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        if (!connected(maze, sx, sy, tx, ty))
+            return -1;
+
+        int target = maze.index(tx, ty);
+        Tree tree = tree(maze, sx, sy);
+        if (!isReached(tree, target))
+            return -1;
+        return depth(tree, new int[] { -maze.stride, -1, 1, maze.stride }, target);
+    }
+
+    // Whether (tx, ty) can be reached from (sx, sy), by the labels of the maze's components
+    private boolean connected(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        Components labels = components.get(maze);
+        if (labels == null) {
+            labels = Components.label(maze);
+            components.put(maze, labels);
+            memoryUsed += labels.sizeInBytes();
+        }
+        // a search from a wall still spreads into the open cells next to it, so only
+        // an open source is judged by its label
+        if (!maze.isOpen(sx, sy) || labels.connected(sx, sy, tx, ty))
+            return true;
+        unreachable++;
+        return false;
+    }
+
+    // The tree from (sx, sy), from the cache or flooded and added to it
+    private Tree tree(BitGrid maze, int sx, int sy)
+    {
+        int source = maze.index(sx, sy);
+        Key key = new Key(maze, source);
+        Tree tree = trees.get(key);
+        if (tree != null) {
+            hits++;
+            return tree;
+        }
+
+        misses++;
+        long[] parentLo = new long[maze.open.length];
+        long[] parentHi = new long[maze.open.length];
+        long cells = GridSearch.flood(maze, sx, sy, parentLo, parentHi);
+        tree = new Tree(source, maze.visited.clone(), parentLo, parentHi, cells);
+
+        trees.put(key, tree);
+        memoryUsed += tree.sizeInBytes();
+
+        // evict from the least recently used end, but never the tree just added
+        Iterator<Tree> eldest = trees.values().iterator();
+        while (memoryUsed > budget && trees.size() > 1) {
+            memoryUsed -= eldest.next().sizeInBytes();
+            eldest.remove();
+            evictions++;
+        }
+        return tree;
+    }
+
+    private static boolean isReached(Tree tree, int cell) {
+        return (tree.reached[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    // the number of steps from a reached cell back to the source
+    private static int depth(Tree tree, int[] offset, int cell)
+    {
+        int steps = 0;
+        for (; cell != tree.source; steps++) {
+            int w = cell >>> 6;
+            cell -= offset[(int) ((tree.parentLo[w] >>> cell) & 1) | (int) (((tree.parentHi[w] >>> cell) & 1) << 1)];
+        }
+        return steps;
+    }
+
+    // Drops the trees and labels of a maze, to be called after changing it
+    void invalidate(BitGrid maze)
+    {
+        Components labels = components.remove(maze);
+        if (labels != null)
+            memoryUsed -= labels.sizeInBytes();
+        for (Iterator<Map.Entry<Key, Tree>> it = trees.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Tree> entry = it.next();
+            if (entry.getKey().maze == maze) {
+                memoryUsed -= entry.getValue().sizeInBytes();
+                it.remove();
+            }
+        }
+    }
+
+    void clear() {
+        trees.clear();
+        components.clear();
+        memoryUsed = 0;
+    }
+
+    // number of cached trees
+    int size() {
+        return trees.size();
+    }
+
+    // heap used by the cached trees and labels
+    long memoryUsed() {
+        return memoryUsed;
+    }
+
+    long hits() {
+        return hits;
+    }
+
+    long misses() {
+        return misses;
+    }
+
+    long evictions() {
+        return evictions;
+    }
+
+    // number of queries answered as unreachable from the labels alone
+    long unreachable() {
+        return unreachable;
+    }
+
+    // fraction of queries answered from the cache, 0 before the first query
+    double hitRate() {
+        long queries = hits + misses;
+        return queries == 0 ? 0 : (double) hits / queries;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d trees, %.1f MB, %d hits, %d misses (%.1f%%), %d evictions, %d unreachable",
+                size(), memoryUsed / 1e6, hits, misses, 100 * hitRate(), evictions, unreachable);
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Lee's algorithm as a router: connects a list of nets (source and target pairs)
+ * one after the other, blocking the path of every net it commits so later nets
+ * route around it.
+ * <p>
+ * The router works on its own copy of the maze, and a committed path is blocked by
+ * clearing its cells in the copy's open plane.  The pins of nets not yet routed are
+ * blocked too, so an early net can't run over them, and each net unblocks its own
+ * two pins while it is being routed.  A pin may be shared by several nets, which
+ * then meet there: it is usable by every one of them if it is open in the maze,
+ * whether or not an earlier net has since closed it.
+ * <p>
+ * The clearance step, deleting all marks, would cost a pass over the whole grid per
+ * net if it cleared the planes.  Instead every word of the visited plane that a
+ * search marks for the first time is put on a dirty list, and only those words of
+ * the visited and parent planes are zeroed afterwards, so a net that is routed in a
+ * small corner of a large board costs as much as the cells its wave covered.
+ */
+class NetRouter
+{
+    // the maze with committed paths and pending pins closed, visited holds the marks
+    private final BitGrid grid;
+
+    // 2-bit parent directions, laid out like the grid
+    private final long[] parentLo, parentHi;
+
+    // bit index offsets of the 4 possible movements, in the same order as GridSearch
+    private final int[] offset;
+
+    private final IntQueue q;
+
+    // words of visited, parentLo and parentHi marked by the current search
+    private final IntQueue dirty = new IntQueue(64);
+
+    // words cleared over all nets so far
+    private long cleared;
+
+    // Copies the open cells of maze, which is left untouched
+    NetRouter(BitGrid maze)
+    {
+        grid = new BitGrid(maze.width, maze.height);
+        System.arraycopy(maze.open, 0, grid.open, 0, maze.open.length);
+        parentLo = new long[grid.open.length];
+        parentHi = new long[grid.open.length];
+        offset = new int[] { -grid.stride, -1, 1, grid.stride };
+        q = new IntQueue(grid.width + grid.height);
+    }
+
+    // Routes nets given as { sx, sy, tx, ty } in order, returning their routes (null
+    // for a net that can't be connected).  Route cells are row-major (y * width + x).
+    Route[] routeAll(int[][] nets)
+    {
+        // a pin is usable if it is open in the maze, shared with other nets or not
+        boolean[][] pins = new boolean[nets.length][2];
+        for (int n = 0; n < nets.length; n++) {
+            int[] net = nets[n];
+            pins[n][0] = grid.isOpen(net[0], net[1]);
+            pins[n][1] = grid.isOpen(net[2], net[3]);
+        }
+
+        // then reserve them all
+        for (int n = 0; n < nets.length; n++) {
+            int[] net = nets[n];
+            if (pins[n][0])
+                grid.setOpen(net[0], net[1], false);
+            if (pins[n][1])
+                grid.setOpen(net[2], net[3], false);
+        }
+
+        Route[] routes = new Route[nets.length];
+        for (int n = 0; n < nets.length; n++)
+        {
+            int[] net = nets[n];
+            if (!pins[n][0] || !pins[n][1])
+                continue;
+
+            grid.setOpen(net[0], net[1], true);
+            grid.setOpen(net[2], net[3], true);
+            routes[n] = route(net[0], net[1], net[2], net[3]);
+            if (routes[n] == null) {
+                grid.setOpen(net[0], net[1], false);
+                grid.setOpen(net[2], net[3], false);
+            }
+        }
+        return routes;
+    }
+
+    // Routes a single net from (sx, sy) to (tx, ty) around everything committed so far
+    // and commits its path.  Returns null, committing nothing, if it can't be connected.
+    Route route(int sx, int sy, int tx, int ty)
+    {
+        if (!grid.isOpen(sx, sy) || !grid.isOpen(tx, ty))
+            return null;
+
+        int source = grid.index(sx, sy);
+        int target = grid.index(tx, ty);
+
+        long[] open = grid.open;
+        long[] visited = grid.visited;
+
+        q.clear();
+        mark(source, 0);
+        q.add(source);
+
+        int dist = 0;
+        int expanded = 0;
+        boolean found = source == target;
+
+        while (!found && !q.isEmpty())
+        {
+            dist++;
+            for (int wave = q.size(); wave > 0 && !found; wave--)
+            {
+                int cell = q.poll();
+                expanded++;
+
+                for (int k = 0; k < 4; k++)
+                {
+                    int next = cell + offset[k];
+                    int w = next >>> 6;
+
+                    // the padding cells are never open, so no bounds check is needed
+                    if ((open[w] & ~visited[w] & (1L << next)) == 0)
+                        continue;
+
+                    mark(next, k);
+                    if (next == target) {
+                        found = true;
+                        break;
+                    }
+                    q.add(next);
+                }
+            }
+        }
+
+        Route route = null;
+        if (found) {
+            route = GridSearch.backtrace(grid, parentLo, parentHi, offset, target, dist);
+            route.expanded = expanded;
+
+            // block the path for the future wirings
+            for (int cell : route.cells)
+                grid.setOpen(cell % grid.width, cell / grid.width, false);
+        }
+
+        // delete all marks, only in the words this search touched
+        while (!dirty.isEmpty()) {
+            int w = dirty.poll();
+            visited[w] = 0;
+            parentLo[w] = 0;
+            parentHi[w] = 0;
+            cleared++;
+        }
+        return route;
+    }
+
+    // Marks a cell visited with parent direction k, noting its word the first time
+    private void mark(int cell, int k)
+    {
+        int w = cell >>> 6;
+        long bit = 1L << cell;
+        if (grid.visited[w] == 0)
+            dirty.add(w);
+        grid.visited[w] |= bit;
+        if ((k & 1) != 0) parentLo[w] |= bit;
+        if ((k & 2) != 0) parentHi[w] |= bit;
+    }
+
+    // Whether (x, y) is free, open and not taken by a committed path or a pending pin
+    boolean isFree(int x, int y) {
+        return grid.isOpen(x, y);
+    }
+
+    // the maze as it stands, with the committed paths closed
+    BitGrid grid() {
+        return grid;
+    }
+
+    // number of words of marks cleared over all nets, the total cost of clearance
+    long cleared() {
+        return cleared;
+    }
+}
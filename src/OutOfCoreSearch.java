@@ -0,0 +1,240 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Lee's wave expansion for mazes larger than the heap.
+ * <p>
+ * The maze is packed into a file of bits laid out like a BitGrid (rows padded to
+ * whole words, a closed row above and below) and the search state into a second
+ * file holding, for every word of the maze, the visited bits and the low and high
+ * bits of the 2-bit parent directions next to each other.  Both are memory mapped
+ * (MappedWords), so the heap holds neither: a 20k x 20k maze is a 50 MB maze file
+ * and a 150 MB state file, and the pages of either are read in and written back by
+ * the operating system as the wave passes over them.
+ * <p>
+ * The wave and the next one are SpillQueues of bit indices, which keep a fixed
+ * number of blocks in memory and spill the rest to disk.  Every block of a wave is
+ * sorted before it is expanded, so the search sweeps through the mapped files a
+ * band of rows (a tile of the maze) at a time instead of jumping about in them.
+ * <p>
+ * The files are addressed by long bit indices, but a Route numbers its cells with
+ * ints, which still limits a solve to 2^31 cells (about 46k x 46k).  The solution
+ * is written straight from the maze file, a row at a time.
+ */
+class OutOfCoreSearch implements Closeable
+{
+    // values per in-memory block of a wave, 8 MB
+    private static final int BLOCK = 1 << 20;
+
+    final int width, height;
+    private final long stride;
+
+    // the work directory and whether it was made (and is to be deleted) here
+    private final File dir;
+    private final boolean temporary;
+
+    // the maze, the file it was packed into (null for a maze file, which is used where
+    // it is), and the search state with 3 words (visited, parent low, parent high) for
+    // every word of the maze
+    private final MappedWords open;
+    private final File packedFile, stateFile;
+    private MappedWords state;
+
+    // what to close to release the maze, the MappedWords or the MazeFile they belong to
+    private final Closeable source;
+
+    private OutOfCoreSearch(int width, int height, File dir, boolean temporary,
+                            MappedWords open, File packedFile, Closeable source) {
+        this.width = width;
+        this.height = height;
+        this.stride = (long) ((width >>> 6) + 1) << 6;
+        this.dir = dir;
+        this.temporary = temporary;
+        this.open = open;
+        this.packedFile = packedFile;
+        this.source = source;
+        this.stateFile = new File(dir, "state.bits");
+    }
+
+    // Prepares a maze for searching, working in files in dir (a new temporary directory
+    // if dir is null) that are deleted by close.  The body of a MazeFile is mapped where
+    // it is, an image is first packed into a file a row at a time.
+    static OutOfCoreSearch open(File maze, File dir) throws IOException
+    {
+        boolean temporary = dir == null;
+        File work = temporary ? Files.createTempDirectory("maze").toFile() : dir;
+        File packed = null;
+        try {
+            if (MazeFile.isMazeFile(maze)) {
+                MazeFile file = MazeFile.open(maze);
+                return new OutOfCoreSearch(file.width, file.height, work, temporary, file.body(), null, file);
+            }
+
+            packed = new File(work, "maze.bits");
+            int[] size = pack(maze, packed);
+            MappedWords open = MappedWords.open(packed, false);
+            return new OutOfCoreSearch(size[0], size[1], work, temporary, open, packed, open);
+        } catch (IOException | RuntimeException e) {
+            if (packed != null)
+                packed.delete();
+            if (temporary)
+                work.delete();
+            throw e;
+        }
+    }
+
+    // Packs a maze image into a file of bits with the same layout as a BitGrid, reading
+    // the image a row at a time.  Returns { width, height }.
+    static int[] pack(File image, final File packed) throws IOException
+    {
+        final int[] size = new int[2];
+        final MappedWords[] out = new MappedWords[1];
+        try {
+            PngMazeReader.scan(image, new PngMazeReader.Rows() {
+                public void size(int width, int height) throws IOException {
+                    size[0] = width;
+                    size[1] = height;
+                    out[0] = MappedWords.create(packed, (long) ((width >>> 6) + 1) * (height + 2));
+                }
+
+                public void row(int y, long[] bits) {
+                    out[0].set((long) (y + 1) * bits.length, bits, 0, bits.length);
+                }
+            });
+        } finally {
+            if (out[0] != null)
+                out[0].close();
+        }
+        return size;
+    }
+
+    // Find the shortest route from (sx, sy) to (tx, ty).  Route cells are row-major
+    // (y * width + x).  Returns null if the destination can't be reached.
+    Route solve(int sx, int sy, int tx, int ty) throws IOException
+    {
+        if ((long) width * height > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("a route can't number the cells of a " + width + "x" + height + " maze");
+
+        // a fresh, all zero, state file
+        if (state != null)
+            state.close();
+        state = MappedWords.create(stateFile, 3 * open.length);
+
+        long source = index(sx, sy);
+        long target = index(tx, ty);
+        long[] offset = { -stride, -1, 1, stride };
+
+        try (SpillQueue a = new SpillQueue(new File(dir, "wave0.bin"), BLOCK, true);
+             SpillQueue b = new SpillQueue(new File(dir, "wave1.bin"), BLOCK, true)) {
+            SpillQueue wave = a, next = b;
+
+            claim(source, 0);
+            wave.add(source);
+
+            int dist = 0;
+            long expanded = 0;
+            boolean found = source == target;
+
+            while (!found && !wave.isEmpty())
+            {
+                dist++;
+                while (!wave.isEmpty() && !found)
+                {
+                    long cell = wave.poll();
+                    expanded++;
+
+                    for (int k = 0; k < 4; k++)
+                    {
+                        // the padding cells are never open, so no bounds check is needed
+                        long c = cell + offset[k];
+                        if ((open.get(c >>> 6) & (1L << c)) == 0 || !claim(c, k))
+                            continue;
+
+                        if (c == target) {
+                            found = true;
+                            break;
+                        }
+                        next.add(c);
+                    }
+                }
+
+                SpillQueue swap = wave;
+                wave = next;
+                next = swap;
+            }
+
+            if (!found)
+                return null;
+
+            Route route = backtrace(target, dist, offset);
+            route.expanded = (int) Math.min(expanded, Integer.MAX_VALUE);
+            return route;
+        }
+    }
+
+    // Writes the maze with the route painted on it as a PNG, a row at a time
+    void write(Route route, File file, int level) throws IOException
+    {
+        SolutionWriter.write(width, height, new SolutionWriter.Rows() {
+            public void read(int y, long[] bits) {
+                open.get(index(0, y) >>> 6, bits, 0, bits.length);
+            }
+        }, route, file, level);
+    }
+
+    // bit index of cell (x, y)
+    private long index(int x, int y) {
+        return (y + 1) * stride + x;
+    }
+
+    // Marks an unvisited cell visited with parent direction k, returns false if it was visited
+    private boolean claim(long cell, int k)
+    {
+        long w = 3 * (cell >>> 6);
+        long bit = 1L << cell;
+        long visited = state.get(w);
+        if ((visited & bit) != 0)
+            return false;
+
+        state.set(w, visited | bit);
+        if ((k & 1) != 0) state.set(w + 1, state.get(w + 1) | bit);
+        if ((k & 2) != 0) state.set(w + 2, state.get(w + 2) | bit);
+        return true;
+    }
+
+    // Walks the parent directions from target back to the source.
+    private Route backtrace(long target, int dist, long[] offset)
+    {
+        int[] cells = new int[dist + 1];
+        long cell = target;
+        for (int step = dist; step > 0; step--)
+        {
+            cells[step] = cell(cell);
+            long w = 3 * (cell >>> 6);
+            int k = (int) ((state.get(w + 1) >>> cell) & 1) | (int) (((state.get(w + 2) >>> cell) & 1) << 1);
+            cell -= offset[k];
+        }
+        cells[0] = cell(cell);
+        return new Route(dist, cells);
+    }
+
+    // row-major cell number of a bit index
+    private int cell(long index) {
+        return (int) ((index / stride - 1) * width + index % stride);
+    }
+
+    // Closes the mapped files and deletes them
+    public void close() throws IOException
+    {
+        source.close();
+        if (state != null)
+            state.close();
+        if (packedFile != null)
+            packedFile.delete();
+        stateFile.delete();
+        if (temporary)
+            dir.delete();
+    }
+}
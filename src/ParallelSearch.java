@@ -0,0 +1,222 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lee's wave expansion with every wave split across the threads of a ForkJoinPool.
+ * <p>
+ * The search is level synchronous: the cells of one wave are cut into chunks, each
+ * chunk is expanded by a task that collects the cells it discovers in a buffer of
+ * its own, and the buffers are joined into the next wave once every task is done.
+ * A cell is claimed with a compare-and-set on its word of the shared visited
+ * bitmap, so exactly one thread wins each cell and records its 2-bit parent
+ * direction, and the parent planes are updated with compare-and-set too because
+ * neighbouring cells in the same word may be claimed by other threads.  Every cell
+ * of wave d is still at distance d, so the route is a shortest one.
+ * <p>
+ * Small waves are expanded by the calling thread, as forking costs more than it
+ * saves for a few hundred cells.  A perfect maze rarely has a wave of more than a
+ * few thousand cells, so most of the gain is on braided and open mazes.
+ * <p>
+ * So far this has only been timed on a single core, where it is 1.4 to 1.6 times
+ * slower than GridSearch because of the atomics and the tasks.  Until "java
+ * Benchmark parallel" shows it gaining on GridSearch with more threads on a
+ * multi-core machine it is not offered as a Solver, and the benchmark is the only
+ * caller.
+ */
+class ParallelSearch
+{
+    // waves smaller than this are expanded without forking
+    private static final int SEQUENTIAL = 4096;
+
+    // the fewest cells a forked task expands
+    private static final int CHUNK = 1024;
+
+    private final long[] open;
+    private final int[] offset;
+    private final int target;
+
+    // the visited bitmap and the parent direction planes, laid out like the grid
+    private final AtomicLongArray visited, parentLo, parentHi;
+
+    private volatile boolean found;
+
+    private ParallelSearch(BitGrid maze, int target) {
+        this.open = maze.open;
+        this.offset = new int[] { -maze.stride, -1, 1, maze.stride };
+        this.target = target;
+        this.visited = new AtomicLongArray(open.length);
+        this.parentLo = new AtomicLongArray(open.length);
+        this.parentHi = new AtomicLongArray(open.length);
+    }
+
+    // Find the shortest route from (sx, sy) to (tx, ty) on the common pool.  Route cells
+    // are row-major (y * width + x).  Returns null if the destination can't be reached.
+    static Route solve(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        return solve(maze, sx, sy, tx, ty, ForkJoinPool.commonPool());
+    }
+
+    // Find the shortest route from (sx, sy) to (tx, ty) using the threads of pool.
+    static Route solve(BitGrid maze, int sx, int sy, int tx, int ty, ForkJoinPool pool)
+    {
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+        ParallelSearch search = new ParallelSearch(maze, target);
+
+        search.claim(source, 0);
+        int[] wave = { source };
+        int size = 1;
+
+        int dist = 0;
+        int expanded = 0;
+        boolean found = source == target;
+
+        Expand level;
+        while (!found && size > 0)
+        {
+            dist++;
+            expanded += size;
+
+            if (size < SEQUENTIAL || pool.getParallelism() == 1) {
+                level = new Expand(search, wave, 0, size, 1);
+                level.compute();
+            } else {
+                // about four tasks per thread to even out the load
+                level = new Expand(search, wave, 0, size, 4 * pool.getParallelism());
+                pool.invoke(level);
+            }
+
+            // join the buffers of the tasks into the next wave
+            int[] next = new int[level.total()];
+            size = level.gather(next, 0);
+            wave = next;
+            found = search.found;
+        }
+
+        if (!found)
+            return null;
+
+        Route route = search.backtrace(maze, dist);
+        route.expanded = expanded;
+        return route;
+    }
+
+    // Claims an unvisited open cell reached by movement k, returns false if another
+    // thread got there first
+    private boolean claim(int cell, int k)
+    {
+        int w = cell >>> 6;
+        long bit = 1L << cell;
+        long old;
+        do {
+            old = visited.get(w);
+            if ((old & bit) != 0)
+                return false;
+        } while (!visited.compareAndSet(w, old, old | bit));
+
+        if ((k & 1) != 0) set(parentLo, w, bit);
+        if ((k & 2) != 0) set(parentHi, w, bit);
+        return true;
+    }
+
+    private static void set(AtomicLongArray plane, int w, long bit)
+    {
+        long old;
+        do {
+            old = plane.get(w);
+        } while (!plane.compareAndSet(w, old, old | bit));
+    }
+
+    // Walks the parent directions from the target back to the source.
+    private Route backtrace(BitGrid maze, int dist)
+    {
+        int[] cells = new int[dist + 1];
+        int cell = target;
+        for (int step = dist; step > 0; step--)
+        {
+            cells[step] = maze.cell(cell);
+            int w = cell >>> 6;
+            int k = (int) ((parentLo.get(w) >>> cell) & 1) | (int) (((parentHi.get(w) >>> cell) & 1) << 1);
+            cell -= offset[k];
+        }
+        cells[0] = maze.cell(cell);
+        return new Route(dist, cells);
+    }
+
+    // Expands wave[from, to), splitting it in halves into up to the given number of
+    // tasks while they get at least CHUNK cells each
+    private static class Expand extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final ParallelSearch search;
+        private final int[] wave;
+        private final int from, to, tasks;
+
+        private Expand left, right;
+        private int[] out;
+        private int count;
+
+        Expand(ParallelSearch search, int[] wave, int from, int to, int tasks) {
+            this.search = search;
+            this.wave = wave;
+            this.from = from;
+            this.to = to;
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (tasks > 1 && to - from >= 2 * CHUNK) {
+                int mid = (from + to) >>> 1;
+                left = new Expand(search, wave, from, mid, tasks >> 1);
+                right = new Expand(search, wave, mid, to, tasks - (tasks >> 1));
+                invokeAll(left, right);
+                return;
+            }
+
+            long[] open = search.open;
+            AtomicLongArray visited = search.visited;
+            int[] offset = search.offset;
+            int target = search.target;
+
+            out = new int[Math.max(16, (to - from) * 2)];
+            for (int n = from; n < to; n++)
+            {
+                int cell = wave[n];
+                for (int k = 0; k < 4; k++)
+                {
+                    int next = cell + offset[k];
+                    int w = next >>> 6;
+                    long bit = 1L << next;
+
+                    // a plain read first, most neighbours are walls or already claimed
+                    if ((open[w] & ~visited.get(w) & bit) == 0 || !search.claim(next, k))
+                        continue;
+
+                    if (next == target)
+                        search.found = true;
+                    if (count == out.length)
+                        out = Arrays.copyOf(out, count << 1);
+                    out[count++] = next;
+                }
+            }
+        }
+
+        // number of cells discovered by this task and its subtasks
+        int total() {
+            return left != null ? left.total() + right.total() : count;
+        }
+
+        // copies the discovered cells into next from index at, returns the end index
+        int gather(int[] next, int at) {
+            if (left != null)
+                return right.gather(next, left.gather(next, at));
+            System.arraycopy(out, 0, next, at, count);
+            return at + count;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Loads a maze image straight into a BitGrid.
+ * <p>
+ * A non-interlaced PNG is decoded here one scanline at a time: the IDAT chunks are
+ * inflated into a single row buffer, the row is unfiltered against the previous one
+ * and its pixels are packed into the grid.  Only two rows of the image are ever in
+ * memory, so loading a maze needs little more than the BitGrid itself, instead of
+ * the BufferedImage copy and the int[][] of EasyBufferedImage.getPixels2D.  The
+ * packed rows can also be handed to a Rows callback (scan) for mazes that are
+ * written somewhere other than a BitGrid.
+ * <p>
+ * A cell is open when it would come out of Main.readMaze as 255, that is when the
+ * green sample of the (opaque) pixel is 255.  Interlaced PNGs and other formats
+ * are read through an ImageReader in strips of rows.
+ */
+class PngMazeReader
+{
+    private static final long PNG_SIGNATURE = 0x89504E470D0A1A0AL;
+
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504C5445;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454E44;
+
+    // colour types
+    private static final int GRAY = 0, RGB = 2, PALETTE = 3, GRAY_ALPHA = 4, RGB_ALPHA = 6;
+
+    // rows decoded per strip when falling back to an ImageReader
+    private static final int STRIP = 256;
+
+    private final DataInputStream in;
+    private final Inflater inflater = new Inflater();
+    private byte[] chunk = new byte[1 << 16];
+
+    // bytes left in the current chunk
+    private int idatRemaining;
+
+    private int width, height, bitDepth, colorType, interlace;
+    private boolean[] openPaletteEntry;
+
+    private PngMazeReader(DataInputStream in) {
+        this.in = in;
+    }
+
+    // Receives a maze image one row at a time
+    interface Rows
+    {
+        // called once, before the first row
+        void size(int width, int height) throws IOException;
+
+        // the open cells of row y, column x is bit x of bits[x >>> 6]; bits is reused
+        void row(int y, long[] bits) throws IOException;
+    }
+
+    // Reads a maze image file into a BitGrid
+    static BitGrid read(File file) throws IOException {
+        final BitGrid[] grid = new BitGrid[1];
+        scan(file, new Rows() {
+            public void size(int width, int height) {
+                grid[0] = new BitGrid(width, height);
+            }
+
+            public void row(int y, long[] bits) {
+                System.arraycopy(bits, 0, grid[0].open, grid[0].index(0, y) >>> 6, bits.length);
+            }
+        });
+        return grid[0];
+    }
+
+    // Reads a maze image file row by row, without keeping more than two rows of it
+    static void scan(File file, Rows rows) throws IOException {
+        if (!file.exists()) throw new FileNotFoundException(file.getName());
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readLong() == PNG_SIGNATURE) {
+                PngMazeReader reader = new PngMazeReader(in);
+                try {
+                    if (reader.decode(rows))
+                        return;
+                } finally {
+                    reader.inflater.end();
+                }
+            }
+        } catch (EOFException e) {
+            // too short to be a PNG, let ImageIO decide what it is
+        }
+
+        readStrips(file, rows);
+    }
+
+    // The { width, height } of a maze image, from the PNG header or the ImageReader,
+    // without decoding the image
+    static int[] size(File file) throws IOException {
+        if (!file.exists()) throw new FileNotFoundException(file.getName());
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64))) {
+            if (in.readLong() == PNG_SIGNATURE) {
+                in.readInt(); // chunk length
+                if (in.readInt() == IHDR)
+                    return new int[] { in.readInt(), in.readInt() };
+            }
+        } catch (EOFException e) {
+            // too short to be a PNG, let ImageIO decide what it is
+        }
+
+        try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext())
+                throw new IOException("unsupported image format: " + file.getName());
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream);
+                return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Decodes the PNG, or returns false if it is interlaced
+    private boolean decode(Rows rows) throws IOException {
+        int type = nextChunk();
+        if (type != IHDR)
+            throw new IOException("PNG does not start with an IHDR chunk");
+
+        width = in.readInt();
+        height = in.readInt();
+        bitDepth = in.readUnsignedByte();
+        colorType = in.readUnsignedByte();
+        in.readUnsignedByte(); // compression method, always deflate
+        in.readUnsignedByte(); // filter method, always adaptive
+        interlace = in.readUnsignedByte();
+        in.readInt(); // crc
+
+        if (interlace != 0)
+            return false;
+
+        // skip ahead to the image data, keeping the palette if there is one
+        while ((type = nextChunk()) != IDAT) {
+            if (type == IEND)
+                throw new IOException("PNG has no image data");
+            if (type == PLTE)
+                readPalette(idatRemaining);
+            else
+                skip(idatRemaining);
+            in.readInt(); // crc
+        }
+        if (colorType == PALETTE && openPaletteEntry == null)
+            throw new IOException("PNG palette image without a PLTE chunk");
+
+        int channels = colorType == GRAY || colorType == PALETTE ? 1
+                : colorType == GRAY_ALPHA ? 2
+                : colorType == RGB ? 3 : 4;
+        int bitsPerPixel = channels * bitDepth;
+        int bytesPerPixel = Math.max(1, bitsPerPixel >> 3);
+        int rowBytes = (width * bitsPerPixel + 7) >> 3;
+
+        // one byte per pixel images (8 bit gray or palette) are looked up directly
+        boolean[] openSample = null;
+        if (bitDepth == 8 && colorType == PALETTE)
+            openSample = openPaletteEntry;
+        else if (bitDepth == 8 && colorType == GRAY) {
+            openSample = new boolean[256];
+            openSample[255] = true;
+        }
+
+        rows.size(width, height);
+        long[] open = new long[(width >>> 6) + 1];
+
+        // each scanline is a filter type byte followed by rowBytes of filtered data
+        byte[] prev = new byte[rowBytes + 1];
+        byte[] row = new byte[rowBytes + 1];
+
+        for (int y = 0; y < height; y++) {
+            inflateFully(row);
+            unfilter(row, prev, rowBytes, bytesPerPixel);
+
+            long word = 0;
+            for (int x = 0; x < width; x++) {
+                boolean isOpen = openSample != null
+                        ? openSample[row[1 + x] & 0xff]
+                        : isOpen(row, x, bytesPerPixel);
+                if (isOpen)
+                    word |= 1L << x;
+                if ((x & 63) == 63) {
+                    open[x >>> 6] = word;
+                    word = 0;
+                }
+            }
+            open[width >>> 6] = word;
+            rows.row(y, open);
+
+            byte[] swap = prev;
+            prev = row;
+            row = swap;
+        }
+
+        return true;
+    }
+
+    // Whether pixel x of an unfiltered scanline (data starting at offset 1) is open
+    private boolean isOpen(byte[] row, int x, int bytesPerPixel) {
+        if (bitDepth < 8) {
+            int bit = x * bitDepth;
+            int sample = (row[1 + (bit >> 3)] >> (8 - bitDepth - (bit & 7))) & ((1 << bitDepth) - 1);
+            return colorType == PALETTE ? openPaletteEntry[sample] : sample == (1 << bitDepth) - 1;
+        }
+
+        int p = 1 + x * bytesPerPixel;
+        // with 16 bit samples only the most significant byte of each sample is used
+        int step = bitDepth >> 3;
+        switch (colorType) {
+            case PALETTE:
+                return openPaletteEntry[row[p] & 0xff];
+            case GRAY:
+                return (row[p] & 0xff) == 255;
+            case GRAY_ALPHA:
+                return (row[p] & 0xff) == 255 && (row[p + step] & 0xff) == 255;
+            case RGB:
+                return (row[p + step] & 0xff) == 255;
+            default:
+                return (row[p + step] & 0xff) == 255 && (row[p + 3 * step] & 0xff) == 255;
+        }
+    }
+
+    private void readPalette(int length) throws IOException {
+        openPaletteEntry = new boolean[256];
+        for (int k = 0; k < length / 3; k++) {
+            in.readUnsignedByte();
+            openPaletteEntry[k] = in.readUnsignedByte() == 255;
+            in.readUnsignedByte();
+        }
+        skip(length % 3);
+    }
+
+    // Reverses the PNG scanline filter in place, prev holds the previous unfiltered row
+    private static void unfilter(byte[] row, byte[] prev, int rowBytes, int bpp) {
+        int filter = row[0];
+        switch (filter) {
+            case 0: // none
+                break;
+            case 1: // sub
+                for (int k = 1 + bpp; k <= rowBytes; k++)
+                    row[k] += row[k - bpp];
+                break;
+            case 2: // up
+                for (int k = 1; k <= rowBytes; k++)
+                    row[k] += prev[k];
+                break;
+            case 3: // average
+                for (int k = 1; k <= rowBytes; k++) {
+                    int left = k > bpp ? row[k - bpp] & 0xff : 0;
+                    row[k] += (left + (prev[k] & 0xff)) >> 1;
+                }
+                break;
+            case 4: // paeth
+                for (int k = 1; k <= rowBytes; k++) {
+                    int a = k > bpp ? row[k - bpp] & 0xff : 0;
+                    int b = prev[k] & 0xff;
+                    int c = k > bpp ? prev[k - bpp] & 0xff : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+                    row[k] += (pa <= pb && pa <= pc) ? a : (pb <= pc) ? b : c;
+                }
+                break;
+            default:
+                throw new IllegalStateException("unknown PNG filter type " + filter);
+        }
+    }
+
+    // Inflates exactly one scanline, feeding IDAT chunks to the inflater as needed
+    private void inflateFully(byte[] row) throws IOException {
+        int off = 0;
+        try {
+            while (off < row.length) {
+                int n = inflater.inflate(row, off, row.length - off);
+                off += n;
+                if (n == 0) {
+                    if (inflater.finished() || inflater.needsDictionary())
+                        throw new EOFException("PNG image data ends early");
+                    if (inflater.needsInput())
+                        feedInflater();
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt PNG image data", e);
+        }
+    }
+
+    private void feedInflater() throws IOException {
+        while (idatRemaining == 0) {
+            in.readInt(); // crc of the finished chunk
+            if (nextChunk() != IDAT)
+                throw new EOFException("PNG image data ends early");
+        }
+        int n = Math.min(idatRemaining, chunk.length);
+        in.readFully(chunk, 0, n);
+        idatRemaining -= n;
+        inflater.setInput(chunk, 0, n);
+    }
+
+    // Reads a chunk header, leaving the chunk length in idatRemaining
+    private int nextChunk() throws IOException {
+        idatRemaining = in.readInt();
+        return in.readInt();
+    }
+
+    private void skip(int n) throws IOException {
+        while (n > 0) {
+            int skipped = in.skipBytes(n);
+            if (skipped <= 0)
+                throw new EOFException();
+            n -= skipped;
+        }
+    }
+
+    // Reads any image ImageIO understands in strips of rows
+    private static void readStrips(File file, Rows rows) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext())
+                throw new IOException("unsupported image format: " + file.getName());
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                rows.size(width, height);
+                long[] open = new long[(width >>> 6) + 1];
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                for (int top = 0; top < height; top += STRIP) {
+                    param.setSourceRegion(new Rectangle(0, top, width, Math.min(STRIP, height - top)));
+                    BufferedImage strip = reader.read(0, param);
+                    for (int y = 0; y < strip.getHeight(); y++) {
+                        Arrays.fill(open, 0L);
+                        for (int x = 0; x < width; x++) {
+                            int argb = strip.getRGB(x, y);
+                            if ((argb >>> 24) == 255 && ((argb >> 8) & 0xff) == 255)
+                                open[x >>> 6] |= 1L << x;
+                        }
+                        rows.row(top + y, open);
+                    }
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * The result of a single-pass solve: the length of the shortest path and the
+ * cells along it, stored as row-major indices (i * N + j) from source to target.
+ */
+class Route
+{
+    int length;
+    int[] cells;
+
+    // number of cells the search expanded to find it
+    int expanded;
+
+    // number of cells put on the wave and the size of the largest wave, 0 for the
+    // solvers that don't count them
+    int enqueued, peakQueue;
+
+    // sum of the costs of the cells entered, the length when every cell costs 1
+    int cost;
+
+    Route(int length, int[] cells) {
+        this.length = length;
+        this.cells = cells;
+        this.cost = length;
+    }
+}
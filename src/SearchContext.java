@@ -0,0 +1,132 @@
+import java.util.Arrays;
+
+/**
+ * GridSearch's wave expansion with state that is kept from one query to the next,
+ * for answering many queries on the same maze.
+ * <p>
+ * GridSearch.solve allocates a visited array and a parent array the size of the
+ * maze for every query, and zeroing them costs as much as a search that explores the
+ * whole maze even when the route is a few cells long.  A context allocates them once.
+ * Instead of clearing visited, every query takes the next generation number and
+ * marks a cell by writing that number into its stamp, so a cell is visited only if
+ * its stamp equals the current generation and the stamps of earlier queries simply
+ * stop counting.  The 2-bit parent of a cell is overwritten whenever it is stamped,
+ * so stale parents are never read either.  A query costs the cells it explores, and
+ * the stamps are only cleared when the generation counter wraps around.
+ * <p>
+ * The methods mirror GridSearch's int[][] methods.  A context is sized for one maze
+ * and must not be shared between threads.
+ */
+class SearchContext
+{
+    // row-major offsets of the 4 possible movements, in the same order as Main.row/col
+    private static final int row[] = { -1, 0, 0, 1 };
+    private static final int col[] = { 0, -1, 1, 0 };
+
+    final int M, N;
+
+    // generation of the query that last visited each cell
+    private final int[] stamp;
+    private int generation;
+
+    // 2-bit parent direction per cell, four cells to a byte
+    private final byte[] parent;
+
+    private final IntQueue q;
+
+    SearchContext(int M, int N)
+    {
+        this.M = M;
+        this.N = N;
+        stamp = new int[M * N];
+        parent = new byte[(M * N + 3) >> 2];
+        q = new IntQueue(M + N);
+    }
+
+    // Length of the shortest path from source cell (i, j) to destination cell (x, y),
+    // or Integer.MAX_VALUE if the destination can't be reached (same as Main.endDist).
+    int endDist(int mat[][], int i, int j, int x, int y)
+    {
+        Route route = solve(mat, i, j, x, y);
+        return route == null ? Integer.MAX_VALUE : route.length;
+    }
+
+    // Marks the shortest path from source cell (i, j) to destination cell (x, y) in
+    // mat with the value 128 and returns mat (same as Main.BFS).
+    int[][] BFS(int mat[][], int i, int j, int x, int y)
+    {
+        Route route = solve(mat, i, j, x, y);
+
+        mat[i][j] = 128;
+        if (route != null)
+            for (int cell : route.cells)
+                mat[cell / N][cell % N] = 128;
+
+        return mat;
+    }
+
+    // Find the shortest route from source cell (i, j) to destination cell (x, y).
+    // Returns null if the destination can't be reached.
+    Route solve(int mat[][], int i, int j, int x, int y)
+    {
+        int source = i * N + j;
+        int target = x * N + y;
+
+        // a new generation unvisits every cell, the stamps are only cleared on wrap around
+        if (++generation == 0) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        int g = generation;
+
+        q.clear();
+        stamp[source] = g;
+        q.add(source);
+
+        int dist = 0;
+        int expanded = 0;
+        boolean found = source == target;
+
+        // one iteration per wave, the queue holds exactly the cells marked dist
+        while (!found && !q.isEmpty())
+        {
+            dist++;
+            for (int wave = q.size(); wave > 0 && !found; wave--)
+            {
+                int cell = q.poll();
+                int ci = cell / N;
+                int cj = cell - ci * N;
+                expanded++;
+
+                for (int k = 0; k < 4; k++)
+                {
+                    int nextI = ci + row[k];
+                    int nextJ = cj + col[k];
+                    if (nextI < 0 || nextI >= M || nextJ < 0 || nextJ >= N)
+                        continue;
+
+                    int next = nextI * N + nextJ;
+                    if (stamp[next] == g || mat[nextI][nextJ] != 1)
+                        continue;
+
+                    stamp[next] = g;
+                    int shift = (next & 3) << 1;
+                    parent[next >> 2] = (byte) (parent[next >> 2] & ~(3 << shift) | k << shift);
+
+                    if (next == target) {
+                        found = true;
+                        break;
+                    }
+                    q.add(next);
+                }
+            }
+        }
+
+        if (!found)
+            return null;
+
+        Route route = GridSearch.backtrace(parent, source, target, dist, N);
+        route.expanded = expanded;
+        return route;
+    }
+}
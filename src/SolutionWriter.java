@@ -0,0 +1,280 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Renders a solved maze as a 2 bit palette image and writes it as a PNG.
+ * <p>
+ * The image uses four palette entries: wall (black), open (white), path (the gray
+ * 128 Main has always marked the route with) and a spare.  The walls and open
+ * cells are expanded straight from the BitGrid words, eight cells to a table
+ * lookup, and then only the cells of the route are painted.  Compared to building
+ * an int[][] of the whole maze and a TYPE_INT_RGB image with three setPixels calls
+ * the image is 16 times smaller and the per-pixel work is proportional to the
+ * length of the route.
+ * <p>
+ * Mazes that are not held in a BitGrid are written one row at a time straight to a
+ * PNG stream instead, so only a single row of the image is ever in memory.
+ */
+class SolutionWriter
+{
+    // palette indices
+    static final int WALL = 0, OPEN = 1, PATH = 2;
+
+    // the default deflate level, 0 (store) to 9 (smallest file)
+    static final int DEFAULT_LEVEL = 4;
+
+    private static final long PNG_SIGNATURE = 0x89504E470D0A1A0AL;
+    private static final int IHDR = 0x49484452, PLTE = 0x504C5445, IDAT = 0x49444154, IEND = 0x49454E44;
+
+    // Supplies the open cells of row y of a maze, column x is bit x of bits[x >>> 6]
+    interface Rows
+    {
+        void read(int y, long[] bits) throws IOException;
+    }
+
+    private static final IndexColorModel PALETTE = new IndexColorModel(2, 4,
+            new byte[] { 0, (byte) 255, (byte) 128, (byte) 255 },
+            new byte[] { 0, (byte) 255, (byte) 128, 0 },
+            new byte[] { 0, (byte) 255, (byte) 128, 0 });
+
+    // the two bytes (eight 2 bit pixels) for every byte (eight cells) of a BitGrid row
+    private static final short[] EXPAND = new short[256];
+    static {
+        for (int b = 0; b < 256; b++) {
+            int pixels = 0;
+            for (int k = 0; k < 8; k++)
+                pixels |= (((b >> k) & 1) == 0 ? WALL : OPEN) << (14 - 2 * k);
+            EXPAND[b] = (short) pixels;
+        }
+    }
+
+    // Returns a 2 bit palette image of the maze with the route painted on it
+    static BufferedImage render(BitGrid maze, Route route) {
+        BufferedImage image = new BufferedImage(maze.width, maze.height, BufferedImage.TYPE_BYTE_BINARY, PALETTE);
+        MultiPixelPackedSampleModel model = (MultiPixelPackedSampleModel) image.getSampleModel();
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int scanline = model.getScanlineStride();
+        int rowBytes = (maze.width + 3) >> 2;
+
+        // walls and open cells, one BitGrid word (64 cells) gives 16 bytes of the image
+        long[] open = maze.open;
+        for (int y = 0; y < maze.height; y++) {
+            int w = maze.index(0, y) >>> 6;
+            int p = y * scanline;
+            int end = p + rowBytes;
+            while (p < end) {
+                long word = open[w++];
+                for (int k = 0; k < 8 && p < end; k++, word >>>= 8) {
+                    short pixels = EXPAND[(int) word & 0xff];
+                    data[p++] = (byte) (pixels >> 8);
+                    if (p < end)
+                        data[p++] = (byte) pixels;
+                }
+            }
+        }
+
+        if (route != null)
+            paint(image, route.cells, PATH);
+
+        return image;
+    }
+
+    // Sets the palette index of the given row-major cells of a 2 bit image
+    static void paint(BufferedImage image, int[] cells, int index) {
+        MultiPixelPackedSampleModel model = (MultiPixelPackedSampleModel) image.getSampleModel();
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int scanline = model.getScanlineStride();
+        int width = image.getWidth();
+
+        for (int cell : cells) {
+            int y = cell / width;
+            int x = cell - y * width;
+            int p = y * scanline + (x >> 2);
+            int shift = 6 - ((x & 3) << 1);
+            data[p] = (byte) ((data[p] & ~(3 << shift)) | (index << shift));
+        }
+    }
+
+    // Renders the solved maze and writes it to file as a PNG with the default deflate level
+    static void write(BitGrid maze, Route route, File file) throws IOException {
+        write(render(maze, route), file, DEFAULT_LEVEL);
+    }
+
+    // Writes an image as a PNG, level is the deflate level from 0 (fastest) to 9 (smallest)
+    static void write(BufferedImage image, File file, int level) throws IOException {
+        if (level < 0 || level > 9)
+            throw new IllegalArgumentException("compression level must be 0-9: " + level);
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+        if (!writers.hasNext())
+            throw new IOException("no PNG writer available");
+        ImageWriter writer = writers.next();
+
+        // the PNG writer maps a quality q to deflate level (int) (9 * (1 - q)), aim
+        // for the middle of the level so rounding can't drop it by one
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(Math.max(0.0f, 1.0f - (level + 0.5f) / 9.0f));
+        }
+
+        if (file.exists() && !file.delete())
+            throw new IOException("can't replace " + file);
+
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // Writes a solved maze as a 2 bit palette PNG one row at a time, reading the maze
+    // from rows.  Level is the deflate level from 0 (fastest) to 9 (smallest).
+    static void write(int width, int height, Rows rows, Route route, File file, int level) throws IOException {
+        if (level < 0 || level > 9)
+            throw new IllegalArgumentException("compression level must be 0-9: " + level);
+
+        // the route painted row by row
+        int[] cells = route == null ? new int[0] : route.cells.clone();
+        Arrays.sort(cells);
+        int next = 0;
+
+        long[] bits = new long[(width >>> 6) + 1];
+        int rowBytes = (width + 3) >> 2;
+        // a filter type byte (0, none) and the row
+        byte[] line = new byte[rowBytes + 1];
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeLong(PNG_SIGNATURE);
+
+            byte[] header = new byte[13];
+            putInt(header, 0, width);
+            putInt(header, 4, height);
+            header[8] = 2; // bit depth
+            header[9] = 3; // palette colour type
+            chunk(out, IHDR, header, header.length);
+
+            byte[] palette = new byte[12];
+            for (int k = 0; k < 4; k++) {
+                palette[3 * k] = (byte) PALETTE.getRed(k);
+                palette[3 * k + 1] = (byte) PALETTE.getGreen(k);
+                palette[3 * k + 2] = (byte) PALETTE.getBlue(k);
+            }
+            chunk(out, PLTE, palette, palette.length);
+
+            Deflater deflater = new Deflater(level);
+            try (DeflaterOutputStream idat = new DeflaterOutputStream(new IdatStream(out), deflater, 1 << 16)) {
+                for (int y = 0; y < height; y++) {
+                    rows.read(y, bits);
+
+                    int p = 1;
+                    for (int w = 0; p <= rowBytes; w++) {
+                        long word = bits[w];
+                        for (int k = 0; k < 8 && p <= rowBytes; k++, word >>>= 8) {
+                            short pixels = EXPAND[(int) word & 0xff];
+                            line[p++] = (byte) (pixels >> 8);
+                            if (p <= rowBytes)
+                                line[p++] = (byte) pixels;
+                        }
+                    }
+
+                    for (long rowStart = (long) y * width; next < cells.length && cells[next] < rowStart + width; next++) {
+                        int x = (int) (cells[next] - rowStart);
+                        int shift = 6 - ((x & 3) << 1);
+                        line[1 + (x >> 2)] = (byte) ((line[1 + (x >> 2)] & ~(3 << shift)) | (PATH << shift));
+                    }
+
+                    idat.write(line);
+                }
+            } finally {
+                deflater.end();
+            }
+
+            chunk(out, IEND, line, 0);
+        }
+    }
+
+    private static void putInt(byte[] b, int at, int value) {
+        b[at] = (byte) (value >>> 24);
+        b[at + 1] = (byte) (value >>> 16);
+        b[at + 2] = (byte) (value >>> 8);
+        b[at + 3] = (byte) value;
+    }
+
+    // Writes a PNG chunk: length, type, data and the CRC of type and data
+    private static void chunk(DataOutputStream out, int type, byte[] data, int length) throws IOException {
+        byte[] name = new byte[4];
+        putInt(name, 0, type);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(name);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    // Cuts the deflated image data into IDAT chunks of up to 64 KB
+    private static class IdatStream extends OutputStream
+    {
+        private final DataOutputStream out;
+        private final byte[] buffer = new byte[1 << 16];
+        private int count;
+
+        IdatStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length)
+                flushChunk();
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length)
+                    flushChunk();
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0)
+                chunk(out, IDAT, buffer, count);
+            count = 0;
+        }
+
+        // writes the last chunk, but leaves the underlying stream open for IEND
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+import java.lang.management.ManagementFactory;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * What a solve did and how long each part of it took, returned by Main.solve.
+ * <p>
+ * The phases are timed with System.nanoTime.  Reading the image and binarizing it
+ * are one pass in PngMazeReader, and the single wave expansion finds the distance and
+ * the route together, so the old load/binarize and endDist/BFS pairs are one phase
+ * each.  The counts of cells come from the Route; only LEE counts the cells put on
+ * the wave and its largest wave, the other solvers leave them 0.  Memory is the bytes
+ * of heap the solving thread allocated (com.sun.management.ThreadMXBean), which stays
+ * right when Batch runs several solves at once, unlike the heap pools' peak usage,
+ * which is shared by the whole JVM.  It is an upper bound on what the solve held at
+ * any one time, and -1 on a JVM that doesn't count allocations per thread.
+ * <p>
+ * Every phase is also committed as a lee.Phase event and the whole solve as a
+ * lee.Solve event for JDK Flight Recorder, so a recording shows them next to the GC
+ * and allocation events without a profiler attached:
+ * <pre>
+ *     java -XX:StartFlightRecording=filename=solve.jfr Main perfect4k
+ *     jfr print --events lee.Phase,lee.Solve solve.jfr
+ * </pre>
+ * Events that aren't enabled cost next to nothing.
+ */
+class SolveStats
+{
+    enum Phase
+    {
+        LOAD("load"),           // read and binarize the maze
+        SEARCH("search"),       // wave expansion and backtrace
+        CONVERT("convert"),     // the maze as a 2 bit image
+        MARK("mark"),           // paint the route on the image
+        WRITE("write");         // encode and write the PNG
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    @Name("lee.Phase")
+    @Label("Solve Phase")
+    @Category("Lee")
+    @Description("One phase of solving a maze")
+    static class PhaseEvent extends Event
+    {
+        @Label("Maze")
+        String maze;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Cells")
+        long cells;
+    }
+
+    @Name("lee.Solve")
+    @Label("Solve")
+    @Category("Lee")
+    @Description("Solving a maze, from loading it to writing the solution")
+    static class SolveEvent extends Event
+    {
+        @Label("Maze")
+        String maze;
+
+        @Label("Solver")
+        String solver;
+
+        @Label("Cells")
+        long cells;
+
+        @Label("Route Length")
+        int length;
+
+        @Label("Cells Expanded")
+        long expanded;
+
+        @Label("Cells Enqueued")
+        long enqueued;
+
+        @Label("Peak Queue")
+        long peakQueue;
+
+        @Label("Allocated Memory")
+        @DataAmount
+        long allocated;
+    }
+
+    final String maze;
+    final String solver;
+
+    int width, height;
+
+    // the endpoints solved between, { sx, sy, tx, ty }
+    int[] ends;
+
+    // the route found, null if there is none
+    Route route;
+
+    // nanoseconds spent in each phase
+    final long[] nanos = new long[Phase.values().length];
+
+    // bytes of heap allocated by the solving thread, -1 if they aren't counted
+    long allocated = -1;
+
+    // the thread's allocation count when the solve started
+    private final long allocatedBefore;
+
+    private Phase phase;
+    private long started;
+    private PhaseEvent phaseEvent;
+    private final SolveEvent solveEvent = new SolveEvent();
+
+    SolveStats(String maze, String solver)
+    {
+        this.maze = maze;
+        this.solver = solver;
+        this.allocatedBefore = allocatedBytes();
+        solveEvent.begin();
+    }
+
+    // Starts timing a phase, ending the one before
+    void begin(Phase next)
+    {
+        if (phase != null)
+            end();
+        phase = next;
+        phaseEvent = new PhaseEvent();
+        phaseEvent.begin();
+        started = System.nanoTime();
+    }
+
+    // Ends the current phase
+    void end()
+    {
+        nanos[phase.ordinal()] += System.nanoTime() - started;
+        phaseEvent.end();
+        if (phaseEvent.shouldCommit()) {
+            phaseEvent.maze = maze;
+            phaseEvent.phase = phase.label;
+            phaseEvent.cells = cells();
+            phaseEvent.commit();
+        }
+        phase = null;
+    }
+
+    // Ends the last phase and the solve, reading the memory allocated
+    void finish()
+    {
+        if (phase != null)
+            end();
+
+        long after = allocatedBytes();
+        allocated = after < 0 || allocatedBefore < 0 ? -1 : after - allocatedBefore;
+
+        solveEvent.end();
+        if (solveEvent.shouldCommit()) {
+            solveEvent.maze = maze;
+            solveEvent.solver = solver;
+            solveEvent.cells = cells();
+            solveEvent.length = route == null ? -1 : route.length;
+            solveEvent.expanded = route == null ? 0 : route.expanded;
+            solveEvent.enqueued = route == null ? 0 : route.enqueued;
+            solveEvent.peakQueue = route == null ? 0 : route.peakQueue;
+            solveEvent.allocated = allocated;
+            solveEvent.commit();
+        }
+    }
+
+    // Bytes of heap the current thread has allocated so far, or -1 if the JVM can't tell
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+        if (!counting.isThreadAllocatedMemorySupported() || !counting.isThreadAllocatedMemoryEnabled())
+            return -1;
+        return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    long cells() {
+        return (long) width * height;
+    }
+
+    long nanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    long totalNanos() {
+        long total = 0;
+        for (long n : nanos)
+            total += n;
+        return total;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%s (%dx%d) with %s%n", maze, width, height, solver));
+        for (Phase p : Phase.values())
+            text.append(String.format("  %-8s %12.3f ms%n", p.label, nanos(p) / 1e6));
+        text.append(String.format("  %-8s %12.3f ms%n", "total", totalNanos() / 1e6));
+        if (route != null)
+            text.append(String.format("  length %d, %d cells expanded, %d enqueued, largest wave %d%n",
+                    route.length, route.expanded, route.enqueued, route.peakQueue));
+        text.append(allocated < 0 ? "  heap allocated not counted by this JVM"
+                : String.format("  %.1f MB of heap allocated", allocated / 1e6));
+        return text.toString();
+    }
+}
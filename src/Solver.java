@@ -0,0 +1,62 @@
+/**
+ * The shortest path searches that can be run on a BitGrid, selectable by name
+ * (for example on the command line of Main and Benchmark).
+ */
+enum Solver
+{
+    // Lee's wave expansion from the source (GridSearch)
+    LEE(4) {
+        Route solve(BitGrid maze, int sx, int sy, int tx, int ty) {
+            return GridSearch.solve(maze, sx, sy, tx, ty);
+        }
+    },
+
+    // Lee's wave expansion from both ends until the waves meet (BidirectionalSearch)
+    BIDIRECTIONAL(5) {
+        Route solve(BitGrid maze, int sx, int sy, int tx, int ty) {
+            return BidirectionalSearch.solve(maze, sx, sy, tx, ty);
+        }
+    },
+
+    // best first search on distance plus Manhattan distance to the target (AStarSearch)
+    ASTAR(4) {
+        Route solve(BitGrid maze, int sx, int sy, int tx, int ty) {
+            return AStarSearch.solve(maze, sx, sy, tx, ty);
+        }
+    },
+
+    // A* over jump points only, for open areas and long corridors (JumpPointSearch)
+    JPS(12) {
+        Route solve(BitGrid maze, int sx, int sy, int tx, int ty) {
+            return JumpPointSearch.solve(maze, sx, sy, tx, ty);
+        }
+    },
+
+    // Lee's wave expansion going bottom-up over bit planes while the wave is wide
+    // (DirectionOptimizingSearch)
+    HYBRID(4) {
+        Route solve(BitGrid maze, int sx, int sy, int tx, int ty) {
+            return DirectionOptimizingSearch.solve(maze, sx, sy, tx, ty);
+        }
+    },
+
+    // Dijkstra over the maze contracted to its junctions and dead ends (JunctionGraph)
+    JUNCTIONS(64) {
+        Route solve(BitGrid maze, int sx, int sy, int tx, int ty) {
+            return JunctionGraph.build(maze).route(sx, sy, tx, ty);
+        }
+    };
+
+    // Heap a solve takes per cell of the maze, loading and writing the image included,
+    // rounded up from the bytes allocated solving the example mazes (perfect4k, braid2k,
+    // blank and fractal).  JUNCTIONS needs about 60 bytes per junction, which on open
+    // ground is every cell.  Batch admits mazes by it.
+    final int bytesPerCell;
+
+    Solver(int bytesPerCell) {
+        this.bytesPerCell = bytesPerCell;
+    }
+
+    // Find the shortest route from (sx, sy) to (tx, ty), or null if there is none
+    abstract Route solve(BitGrid maze, int sx, int sy, int tx, int ty);
+}
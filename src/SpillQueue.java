@@ -0,0 +1,131 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A first-in first-out queue of longs that keeps at most two blocks in memory and
+ * spills the rest to a file.
+ * <p>
+ * Values are added to a tail block.  When the tail block is full it is written to
+ * the end of the file, and values are polled from a head block that is refilled
+ * from the front of the file, or taken over from the tail when the file has been
+ * read up to its end.  Once everything written to the file has been read back the
+ * file is reused from the start, so it only grows to the largest backlog.
+ * <p>
+ * With sorted set, every block is sorted before it is written or polled from.  For a
+ * wave of a breadth first search, where the order within the wave doesn't matter,
+ * that turns each block into a sweep in index order through the mapped maze.
+ */
+class SpillQueue implements Closeable
+{
+    private final File path;
+    private final boolean sorted;
+
+    private final long[] tail;
+    private int tailCount;
+
+    private final long[] head;
+    private int headPos, headCount;
+
+    private RandomAccessFile file;
+    private final ByteBuffer io;
+    // byte positions of the next block to read and write
+    private long readPos, writePos;
+
+    private long size;
+
+    SpillQueue(File path, int block, boolean sorted) {
+        this.path = path;
+        this.sorted = sorted;
+        this.tail = new long[block];
+        this.head = new long[block];
+        this.io = ByteBuffer.allocateDirect(block << 3).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long size() {
+        return size;
+    }
+
+    // bytes written to the spill file and not yet read back
+    long spilled() {
+        return writePos - readPos;
+    }
+
+    void add(long value) throws IOException {
+        if (tailCount == tail.length)
+            spill();
+        tail[tailCount++] = value;
+        size++;
+    }
+
+    // removes and returns the value at the front, the queue must not be empty
+    long poll() throws IOException {
+        if (headPos == headCount)
+            refill();
+        size--;
+        return head[headPos++];
+    }
+
+    private void spill() throws IOException {
+        if (file == null)
+            file = new RandomAccessFile(path, "rw");
+        if (sorted)
+            Arrays.sort(tail, 0, tailCount);
+
+        io.clear();
+        io.asLongBuffer().put(tail, 0, tailCount);
+        io.limit(tailCount << 3);
+        FileChannel channel = file.getChannel();
+        while (io.hasRemaining())
+            writePos += channel.write(io, writePos);
+        tailCount = 0;
+    }
+
+    private void refill() throws IOException {
+        headPos = 0;
+        if (readPos < writePos) {
+            io.clear();
+            io.limit((int) Math.min(io.capacity(), writePos - readPos));
+            FileChannel channel = file.getChannel();
+            while (io.hasRemaining()) {
+                int n = channel.read(io, readPos);
+                if (n < 0)
+                    throw new IOException("spill file " + path + " ends early");
+                readPos += n;
+            }
+            io.flip();
+            LongBuffer longs = io.asLongBuffer();
+            headCount = longs.remaining();
+            longs.get(head, 0, headCount);
+            if (readPos == writePos)
+                readPos = writePos = 0;
+        } else {
+            // nothing spilled, take over the tail block
+            if (sorted)
+                Arrays.sort(tail, 0, tailCount);
+            System.arraycopy(tail, 0, head, 0, tailCount);
+            headCount = tailCount;
+            tailCount = 0;
+        }
+    }
+
+    // Closes and deletes the spill file
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+            file = null;
+            if (!path.delete() && path.exists())
+                throw new IOException("can't delete " + path);
+        }
+    }
+}
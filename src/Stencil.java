@@ -0,0 +1,71 @@
+/**
+ * The moves a route may make from a cell, selectable by name like a Solver.
+ * <p>
+ * FOUR is the maze's own rule, a step up, down, left or right.  The others add the
+ * four diagonal steps: EIGHT takes them whatever is beside them, cutting across the
+ * corner of a wall, EIGHT_STRICT only takes one when both of the cells it passes
+ * between are open, and OCTILE moves like EIGHT_STRICT but a diagonal step costs
+ * about the square root of 2 of a straight one, so the cheapest route is also the
+ * shortest drawn through the cell centres.
+ * <p>
+ * Every stencil has its own search loop in StencilSearch, working on the padded
+ * BitGrid so no neighbour is bounds checked; the move tables here are for
+ * StencilSearch.checked, the same searches done with Main's bounds checks.
+ */
+enum Stencil
+{
+    // 4-connected, Lee's moves (GridSearch)
+    FOUR(4, 1, 1) {
+        Route solve(BitGrid maze, int sx, int sy, int tx, int ty) {
+            return GridSearch.solve(maze, sx, sy, tx, ty);
+        }
+    },
+
+    // 8-connected, diagonals may cut the corner of a wall
+    EIGHT(8, 1, 1) {
+        Route solve(BitGrid maze, int sx, int sy, int tx, int ty) {
+            return StencilSearch.eight(maze, sx, sy, tx, ty);
+        }
+    },
+
+    // 8-connected, diagonals only between two open cells
+    EIGHT_STRICT(8, 1, 1) {
+        Route solve(BitGrid maze, int sx, int sy, int tx, int ty) {
+            return StencilSearch.eightStrict(maze, sx, sy, tx, ty);
+        }
+    },
+
+    // EIGHT_STRICT with diagonals costing 99/70 of a straight step
+    OCTILE(8, StencilSearch.STRAIGHT, StencilSearch.DIAGONAL) {
+        Route solve(BitGrid maze, int sx, int sy, int tx, int ty) {
+            return StencilSearch.octile(maze, sx, sy, tx, ty);
+        }
+    };
+
+    // the moves in the order of the direction numbers, the four of Main.row/col first and
+    // then up-left, up-right, down-left and down-right; the opposite of k < 4 is 3 - k and
+    // of k >= 4 is 11 - k
+    static final int row[] = { -1, 0, 0, 1, -1, -1, 1, 1 };
+    static final int col[] = { 0, -1, 1, 0, -1, 1, -1, 1 };
+
+    // number of moves, the first of row/col
+    final int moves;
+
+    // cost of a straight and of a diagonal step
+    final int straight, diagonal;
+
+    Stencil(int moves, int straight, int diagonal) {
+        this.moves = moves;
+        this.straight = straight;
+        this.diagonal = diagonal;
+    }
+
+    // Whether a diagonal step may pass the corner of a wall
+    boolean cutsCorners() {
+        return this == EIGHT;
+    }
+
+    // Find the cheapest route from (sx, sy) to (tx, ty) with these moves, or null if there
+    // is none.  Route cells are row-major (y * width + x).
+    abstract Route solve(BitGrid maze, int sx, int sy, int tx, int ty);
+}
@@ -0,0 +1,340 @@
+import java.util.Arrays;
+
+/**
+ * Shortest routes on a BitGrid for the 8-connected stencils (see Stencil), each with
+ * a search loop of its own.
+ * <p>
+ * The padding of the grid does for the diagonals what it does for Lee's four moves:
+ * a step up-left from the first cell of a row lands on the closed spare bits at the
+ * end of the row above, and every step off the top or bottom lands on a padding row,
+ * so the eight neighbours of a cell are its index plus a fixed offset and none of
+ * them is bounds checked.  The one exception is up-left from (0, 0), which would be
+ * the bit before the grid: EIGHT leaves it out for that cell and visits all eight
+ * moves from any other.  EIGHT_STRICT and OCTILE first read the four straight
+ * neighbours into a mask, add the diagonals whose two sides are both open (which
+ * never includes that one), and then visit only the moves left in the mask.
+ * <p>
+ * EIGHT and EIGHT_STRICT cost one per step and are wave expansions like GridSearch.
+ * OCTILE costs STRAIGHT per straight step and DIAGONAL per diagonal one, a ratio
+ * within 0.01% of the square root of 2, and is Dijkstra over a BucketQueue of
+ * DIAGONAL + 1 buckets.  A direction (0 to 7) is kept for every cell reached, a byte
+ * each laid out like the grid, and the route is read back from the target.
+ * <p>
+ * checked runs the same searches over Main's int[][] matrix with its four bounds
+ * comparisons for every neighbour, looking the moves and costs up in the Stencil.
+ * It is only kept to compare the loops above against (see Benchmark).
+ */
+class StencilSearch
+{
+    // cost of a straight and of a diagonal OCTILE step
+    static final int STRAIGHT = 70;
+    static final int DIAGONAL = 99;
+
+    // 8-connected wave expansion, diagonals may cut corners
+    static Route eight(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+
+        long[] open = maze.open;
+        long[] visited = maze.visited;
+        maze.clearVisited();
+
+        int[] offset = offsets(maze);
+        byte[] parent = new byte[open.length << 6];
+
+        // (0, 0), the cell without an up-left neighbour in the arrays
+        int corner = maze.index(0, 0);
+
+        IntQueue q = new IntQueue(maze.width + maze.height);
+
+        maze.visit(source);
+        q.add(source);
+
+        int dist = 0;
+        int expanded = 0;
+        int enqueued = 1, peakQueue = 1;
+        boolean found = source == target;
+
+        while (!found && !q.isEmpty())
+        {
+            dist++;
+            peakQueue = Math.max(peakQueue, q.size());
+            for (int wave = q.size(); wave > 0 && !found; wave--)
+            {
+                int cell = q.poll();
+                expanded++;
+
+                for (int moves = cell == corner ? 0xEF : 0xFF; moves != 0; moves &= moves - 1)
+                {
+                    int k = Integer.numberOfTrailingZeros(moves);
+                    int next = cell + offset[k];
+                    int w = next >>> 6;
+                    long bit = 1L << next;
+                    if ((open[w] & ~visited[w] & bit) == 0)
+                        continue;
+
+                    visited[w] |= bit;
+                    parent[next] = (byte) k;
+
+                    if (next == target) {
+                        found = true;
+                        break;
+                    }
+                    q.add(next);
+                    enqueued++;
+                }
+            }
+        }
+
+        if (!found)
+            return null;
+
+        return backtrace(maze, parent, offset, source, target, dist, expanded, enqueued, peakQueue);
+    }
+
+    // 8-connected wave expansion, diagonals only between two open cells
+    static Route eightStrict(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+
+        long[] open = maze.open;
+        long[] visited = maze.visited;
+        maze.clearVisited();
+
+        int[] offset = offsets(maze);
+        byte[] parent = new byte[open.length << 6];
+
+        IntQueue q = new IntQueue(maze.width + maze.height);
+
+        maze.visit(source);
+        q.add(source);
+
+        int dist = 0;
+        int expanded = 0;
+        int enqueued = 1, peakQueue = 1;
+        boolean found = source == target;
+
+        while (!found && !q.isEmpty())
+        {
+            dist++;
+            peakQueue = Math.max(peakQueue, q.size());
+            for (int wave = q.size(); wave > 0 && !found; wave--)
+            {
+                int cell = q.poll();
+                expanded++;
+
+                for (int moves = strictMoves(open, cell, offset); moves != 0; moves &= moves - 1)
+                {
+                    int k = Integer.numberOfTrailingZeros(moves);
+                    int next = cell + offset[k];
+                    int w = next >>> 6;
+                    long bit = 1L << next;
+                    if ((visited[w] & bit) != 0)
+                        continue;
+
+                    visited[w] |= bit;
+                    parent[next] = (byte) k;
+
+                    if (next == target) {
+                        found = true;
+                        break;
+                    }
+                    q.add(next);
+                    enqueued++;
+                }
+            }
+        }
+
+        if (!found)
+            return null;
+
+        return backtrace(maze, parent, offset, source, target, dist, expanded, enqueued, peakQueue);
+    }
+
+    // Dijkstra with octile step costs, diagonals only between two open cells
+    static Route octile(BitGrid maze, int sx, int sy, int tx, int ty)
+    {
+        int source = maze.index(sx, sy);
+        int target = maze.index(tx, ty);
+        if (source != target && !maze.isOpen(target))
+            return null;
+
+        long[] open = maze.open;
+        int[] offset = offsets(maze);
+        int[] dist = new int[open.length << 6];
+        byte[] parent = new byte[dist.length];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+
+        BucketQueue q = new BucketQueue(DIAGONAL + 1);
+        dist[source] = 0;
+        q.add(source, 0);
+
+        int expanded = 0, enqueued = 1, peakQueue = 1;
+
+        while (!q.isEmpty())
+        {
+            int d = q.minKey();
+            int cell = q.poll();
+            if (d != dist[cell])
+                continue;
+            expanded++;
+
+            if (cell == target)
+                return backtrace(maze, parent, offset, source, target, d, expanded, enqueued, peakQueue);
+
+            for (int moves = strictMoves(open, cell, offset); moves != 0; moves &= moves - 1)
+            {
+                int k = Integer.numberOfTrailingZeros(moves);
+                int next = cell + offset[k];
+                int nd = d + (k < 4 ? STRAIGHT : DIAGONAL);
+                if (nd < 0)
+                    throw new IllegalStateException("route cost overflows an int");
+                if (nd < dist[next]) {
+                    dist[next] = nd;
+                    parent[next] = (byte) k;
+                    q.add(next, nd);
+                    enqueued++;
+                }
+            }
+            peakQueue = Math.max(peakQueue, q.size());
+        }
+
+        return null;
+    }
+
+    // bit index offsets of the 8 moves, in the order of Stencil.row/col
+    private static int[] offsets(BitGrid maze)
+    {
+        int s = maze.stride;
+        return new int[] { -s, -1, 1, s, -s - 1, -s + 1, s - 1, s + 1 };
+    }
+
+    // The moves from cell onto open cells that don't cut a corner, bit k set for direction
+    // k.  A diagonal needs both straight moves beside it: up-left needs up (bit 0) and
+    // left (bit 1), up-right up and right (bit 2), down-left down (bit 3) and left, and
+    // down-right down and right.
+    private static int strictMoves(long[] open, int cell, int[] offset)
+    {
+        int moves = 0;
+        for (int k = 0; k < 4; k++) {
+            int next = cell + offset[k];
+            moves |= (int) ((open[next >>> 6] >>> next) & 1) << k;
+        }
+        if ((moves & 0b0011) == 0b0011 && isOpen(open, cell + offset[4])) moves |= 1 << 4;
+        if ((moves & 0b0101) == 0b0101 && isOpen(open, cell + offset[5])) moves |= 1 << 5;
+        if ((moves & 0b1010) == 0b1010 && isOpen(open, cell + offset[6])) moves |= 1 << 6;
+        if ((moves & 0b1100) == 0b1100 && isOpen(open, cell + offset[7])) moves |= 1 << 7;
+        return moves;
+    }
+
+    private static boolean isOpen(long[] open, int index)
+    {
+        return (open[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Walks the parent directions from target back to source, counting the steps first
+    private static Route backtrace(BitGrid maze, byte[] parent, int[] offset, int source, int target,
+                                   int cost, int expanded, int enqueued, int peakQueue)
+    {
+        int length = 0;
+        for (int cell = target; cell != source; cell -= offset[parent[cell]])
+            length++;
+
+        int[] cells = new int[length + 1];
+        int cell = target;
+        for (int step = length; step > 0; step--) {
+            cells[step] = maze.cell(cell);
+            cell -= offset[parent[cell]];
+        }
+        cells[0] = maze.cell(source);
+
+        Route route = new Route(length, cells);
+        route.cost = cost;
+        route.expanded = expanded;
+        route.enqueued = enqueued;
+        route.peakQueue = peakQueue;
+        return route;
+    }
+
+    // Find the cheapest route with the given stencil from source cell (i, j) to destination
+    // cell (x, y) of a matrix where 1 marks an open cell, bounds checking every neighbour
+    // like Main.isValid.  Route cells are row-major (i * N + j).  Returns null if the
+    // destination can't be reached.
+    static Route checked(int mat[][], Stencil stencil, int i, int j, int x, int y, int M, int N)
+    {
+        int source = i * N + j;
+        int target = x * N + y;
+
+        int[] dist = new int[M * N];
+        byte[] parent = new byte[M * N];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+
+        // the unit cost stencils only ever have two distances waiting
+        BucketQueue q = new BucketQueue(stencil.diagonal + 1);
+        dist[source] = 0;
+        q.add(source, 0);
+
+        int expanded = 0;
+        while (!q.isEmpty())
+        {
+            int d = q.minKey();
+            int cell = q.poll();
+            if (d != dist[cell])
+                continue;
+            expanded++;
+
+            if (cell == target)
+                break;
+
+            int ci = cell / N;
+            int cj = cell - ci * N;
+
+            for (int k = 0; k < stencil.moves; k++)
+            {
+                int nextI = ci + Stencil.row[k];
+                int nextJ = cj + Stencil.col[k];
+                if (!isOpen(mat, nextI, nextJ, M, N))
+                    continue;
+                if (k >= 4 && !stencil.cutsCorners()
+                        && !(isOpen(mat, nextI, cj, M, N) && isOpen(mat, ci, nextJ, M, N)))
+                    continue;
+
+                int next = nextI * N + nextJ;
+                int nd = d + (k < 4 ? stencil.straight : stencil.diagonal);
+                if (nd < dist[next]) {
+                    dist[next] = nd;
+                    parent[next] = (byte) k;
+                    q.add(next, nd);
+                }
+            }
+        }
+
+        if (dist[target] == Integer.MAX_VALUE)
+            return null;
+
+        int length = 0;
+        for (int cell = target; cell != source; cell -= Stencil.row[parent[cell]] * N + Stencil.col[parent[cell]])
+            length++;
+
+        int[] cells = new int[length + 1];
+        int cell = target;
+        for (int step = length; step >= 0; step--) {
+            cells[step] = cell;
+            if (step > 0)
+                cell -= Stencil.row[parent[cell]] * N + Stencil.col[parent[cell]];
+        }
+
+        Route route = new Route(length, cells);
+        route.cost = dist[target];
+        route.expanded = expanded;
+        return route;
+    }
+
+    // whether (row, col) is in the matrix and open, the test Main.isValid makes
+    private static boolean isOpen(int mat[][], int row, int col, int M, int N)
+    {
+        return (row >= 0) && (row < M) && (col >= 0) && (col < N) && mat[row][col] == 1;
+    }
+}